@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Provides the Movie workbooks used as benchmark input.  They are
+ * written by AvailsGenerator, which streams them through SXSSF so
+ * that even a million-row sheet needs little memory, and are kept in
+ * java.io.tmpdir so that they are only generated once per size.
+ */
+final class BenchWorkbook {
+    private BenchWorkbook() {
+    }
+
+    /**
+     * Get a workbook with a single sheet, "Movie", of valid avails
+     * @param rows the number of avails in the sheet
+     * @return the workbook file
+     * @throws IOException if the workbook can't be written
+     */
+    static File movies(int rows) throws IOException {
+        File f = new File(System.getProperty("java.io.tmpdir"),
+                          "availslib-bench-movie-" + rows + ".xlsx");
+        if (f.exists())
+            return f;
+        File tmp = new File(f.getPath() + ".tmp");
+        new AvailsGenerator(rows).generate(tmp.getPath(), rows, 0, 0);
+        if (!tmp.renameTo(f))
+            throw new IOException("can't rename " + tmp + " to " + f);
+        return f;
+    }
+}
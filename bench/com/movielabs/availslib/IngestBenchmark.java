@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for loading a Movie sheet of 1k, 100k or 1M avails,
+ * through the in-memory workbook and the streaming reader, and for
+ * adding already-read rows to a sheet.  Each invocation loads the
+ * whole sheet, so they are run single-shot; the 1M row DOM load
+ * needs a large heap (e.g. -Xmx8g).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class IngestBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private Logger logger;
+    private String file;
+    private String[][] data;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        logger = LogManager.getLogger(IngestBenchmark.class);
+        File f = BenchWorkbook.movies(rows);
+        file = f.getPath();
+        AvailsGenerator gen = new AvailsGenerator(rows);
+        data = new String[rows][];
+        for (int i=0; i<rows; i++)
+            data[i] = gen.movieRow(i);
+    }
+
+    @Benchmark
+    public int addSheet() throws Exception {
+        AvailSS ss = new AvailSS(file, logger, false, true);
+        return ss.addSheet("Movie").getRowCount();
+    }
+
+    @Benchmark
+    public int addSheetStreaming() throws Exception {
+        AvailSS ss = new AvailSS(file, logger, false, true);
+        return ss.addSheetStreaming("Movie").getRowCount();
+    }
+
+    @Benchmark
+    public int addSheetStreamingColumnar() throws Exception {
+        AvailSS ss = new AvailSS(file, logger, false, true);
+        ss.setColumnarStorage(true);
+        return ss.addSheetStreaming("Movie").getRowCount();
+    }
+
+    /**
+     * AvailsSheet.addRow() alone, without reading the workbook
+     */
+    @Benchmark
+    public int addRow() throws Exception {
+        AvailSS ss = new AvailSS(file, logger, false, true);
+        AvailsSheet sheet = new AvailsSheet(ss, "Movie", rows);
+        for (int i=0; i<rows; i++)
+            sheet.addRow(data[i], i + 3);
+        return sheet.getRowCount();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+package com.movielabs.availslib;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the per-cell normalizers and validators in
+ * SheetRow.  The "...CompileEachCall" benchmarks reproduce the
+ * former practice of compiling the regular expression on every
+ * invocation, as a baseline for the compiled patterns held in
+ * PatternRegistry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SheetRowBenchmark {
+    private SheetRow row;
+    private AvailsSheet sheet;
+    private String[] fields;
+
+    @Setup
+    public void setup() {
+        Logger logger = LogManager.getLogger(SheetRowBenchmark.class);
+        AvailSS ss = new AvailSS("bench.xlsx", logger, false, true);
+        sheet = new AvailsSheet(ss, "Movie");
+        fields = new String[44];
+        for (int i=0; i<fields.length; i++)
+            fields[i] = "";
+        fields[2] = "US";
+        fields[3] = " movie ";
+        row = new Movie(sheet, "Movie", 1, fields);
+    }
+
+    @Benchmark
+    public int yesorno() {
+        return row.yesorno(" Yes ");
+    }
+
+    @Benchmark
+    public int normalizeInt() throws Exception {
+        return row.normalizeInt("42.0");
+    }
+
+    @Benchmark
+    public String normalizeYear() {
+        return row.normalizeYear("2015.0");
+    }
+
+    @Benchmark
+    public String normalizeEIDR() {
+        return row.normalizeEIDR("10.5240/7791-8534-2C23-9030-8610-5");
+    }
+
+    @Benchmark
+    public String normalizeEIDRCompileEachCall() {
+        Pattern eidr = Pattern.compile("^\\s*(?:10\\.5240/)?((?:(?:\\p{XDigit}){4}-){5}\\p{XDigit})\\s*$");
+        Matcher m = eidr.matcher("10.5240/7791-8534-2C23-9030-8610-5");
+        return m.matches() ? m.group(1).toUpperCase() : null;
+    }
+
+    @Benchmark
+    public String normalizeDateISO() {
+        return row.normalizeDate("2015-03-21");
+    }
+
+    @Benchmark
+    public String normalizeDateExcel() {
+        return row.normalizeDate("21-Mar-2015");
+    }
+
+    @Benchmark
+    public String normalizeDateCompileEachCall() {
+        Pattern date = Pattern.compile("^\\s*(\\d{4})-(\\d{1,2})-(\\d{1,2})\\s*$");
+        Matcher m = date.matcher("2015-03-21");
+        return m.matches() ? m.group(1) : null;
+    }
+
+    @Benchmark
+    public boolean isValidLanguageTag() throws Exception {
+        return row.isValidLanguageTag("en-US");
+    }
+
+    /**
+     * Includes the cleanup of a mis-cased WorkType
+     */
+    @Benchmark
+    public int addRow() throws Exception {
+        sheet.getRows().clear();
+        sheet.addRow(fields, 1);
+        return sheet.getRows().size();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * JMH benchmarks for converting a loaded Movie sheet to XML, and an
+ * Avails XML document back to a spreadsheet, at 1k, 100k and 1M
+ * avails.  The sheet is loaded once per trial; the output files are
+ * written to java.io.tmpdir.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class XMLBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private Logger logger;
+    private AvailsSheet sheet;
+    private String xmlFile;
+    private String outFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        logger = LogManager.getLogger(XMLBenchmark.class);
+        AvailSS ss = new AvailSS(BenchWorkbook.movies(rows).getPath(), logger, false, true);
+        sheet = ss.addSheetStreaming("Movie");
+        String tmp = System.getProperty("java.io.tmpdir");
+        xmlFile = new File(tmp, "availslib-bench-movie-" + rows + ".xml").getPath();
+        outFile = new File(tmp, "availslib-bench-out-" + rows).getPath();
+        sheet.makeXMLStream(xmlFile, "bench", false); // input for makeSS
+    }
+
+    @Benchmark
+    public Document makeXML() throws Exception {
+        return sheet.makeXML("bench");
+    }
+
+    @Benchmark
+    public void makeXMLFile() throws Exception {
+        sheet.makeXMLFile(outFile + ".xml", "bench");
+    }
+
+    @Benchmark
+    public void makeXMLStream() throws Exception {
+        sheet.makeXMLStream(outFile + ".xml", "bench", false);
+    }
+
+    @Benchmark
+    public void makeXMLParallel() throws Exception {
+        sheet.makeXMLParallel(outFile + ".xml", "bench", false);
+    }
+
+    @Benchmark
+    public void makeSS() throws Exception {
+        new AvailXML(xmlFile, logger).makeSS(outFile + ".xlsx");
+    }
+
+    @Benchmark
+    public void makeSSStreaming() throws Exception {
+        new AvailXML(xmlFile, logger, true).makeSS(outFile + ".xlsx", 100, false);
+    }
+}
@@ -25,7 +25,15 @@
 
 package com.movielabs.availslib;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+import org.w3c.dom.Document;
 
 import org.apache.logging.log4j.*;
 import org.apache.poi.ss.usermodel.Cell;
@@ -44,6 +52,9 @@ public class AvailSS {
     private Logger logger;
     private boolean exitOnError;
     private boolean cleanupData;
+    private boolean columnarStorage;
+    private int stringPoolSize = StringPool.DEFAULT_SIZE;
+    private DiagnosticsSink diagnosticsSink;
 
     /**
      * Create a Spreadsheet object
@@ -68,6 +79,8 @@ public class AvailSS {
      */
     private AvailsSheet addSheetHelper(Workbook wb, Sheet sheet) throws Exception {
         AvailsSheet as = new AvailsSheet(this, sheet.getSheetName());
+        StringPool pool = new StringPool(stringPoolSize);
+        int rows = 0;
 
 //        int qq = 0;
         for (Row row : sheet) {
@@ -75,6 +88,7 @@ public class AvailSS {
             int len = row.getLastCellNum();
             if (len < 0)
             	continue;
+            rows++;
             String[] fields = new String[len];
             for (int i=0; i<len; i++) // XXX: don't want nulls
                 fields[i] = "";
@@ -85,27 +99,28 @@ public class AvailSS {
                 case 0: // Numeric
                     double v = cell.getNumericCellValue();
                     if (v < 0.5) { // XXX hack: assume TotalRunTime
-                        java.util.Date d = cell.getDateCellValue();
-                        fields[idx] = String.format("%02d:%02d:%02d", d.getHours(),
-                                                    d.getMinutes(), d.getSeconds());
+                        fields[idx] = pool.intern(SheetStreamReader.formatRunTime(v));
                         //System.out.println("run=" + tmp);
                     } else {
-                        fields[idx] = cell.toString();
+                        fields[idx] = pool.intern(cell.toString());
                     }
                     break;
                 case 1: // String
                 case 3: // Blank
-                    fields[idx] = cell.getStringCellValue().trim();
+                    fields[idx] = pool.intern(cell.getStringCellValue().trim());
                     break;
                 default:
                     //logger.warn("Cell[" + i + "," + idx + "]: invalid type (" + type + ")");
-                    fields[idx] = cell.toString();
+                    fields[idx] = pool.intern(cell.toString());
                     break;
                 }
             } /* cell */
-            if (as.isAvail(fields))
+            if (!as.scanHeader(fields) && as.isAvail(fields))
                 as.addRow(fields, row.getRowNum() + 1);
         } /* row */
+        LoadStatistics stats = new LoadStatistics(as.getName(), rows, pool);
+        as.setLoadStatistics(stats);
+        logger.info(stats.toString());
         sheets.add(as);
         return as;
     }
@@ -151,6 +166,441 @@ public class AvailSS {
         return as;
     }
 
+    /**
+     * Add several sheets from an Excel spreadsheet to a spreadsheet
+     * object.  The file is opened and parsed only once.
+     * @param sheetNames names of the sheets to add
+     * @return created sheet objects, in the order requested
+     * @throws IllegalArgumentException if a sheet does not exist in the Excel spreadsheet
+     * @throws Exception other error conditions may also throw exceptions
+     */
+    public List<AvailsSheet> addSheets(String... sheetNames) throws Exception {
+        Workbook wb = new XSSFWorkbook(new FileInputStream(file));
+        try {
+            for (String sheetName : sheetNames) {
+                if (wb.getSheet(sheetName) == null)
+                    throw new IllegalArgumentException(file + ":" + sheetName + " not found");
+            }
+            ArrayList<AvailsSheet> added = new ArrayList<AvailsSheet>(sheetNames.length);
+            for (String sheetName : sheetNames)
+                added.add(addSheetHelper(wb, wb.getSheet(sheetName)));
+            return added;
+        } finally {
+            wb.close();
+        }
+    }
+
+    /**
+     * Add every sheet of an Excel spreadsheet to a spreadsheet
+     * object.  The file is opened and parsed only once.
+     * @return created sheet objects, in workbook order
+     * @throws Exception if any error is encountered (e.g. non-existant or corrupt file)
+     */
+    public List<AvailsSheet> addAllSheets() throws Exception {
+        Workbook wb = new XSSFWorkbook(new FileInputStream(file));
+        try {
+            ArrayList<AvailsSheet> added = new ArrayList<AvailsSheet>(wb.getNumberOfSheets());
+            for (int i = 0; i < wb.getNumberOfSheets(); i++)
+                added.add(addSheetHelper(wb, wb.getSheetAt(i)));
+            return added;
+        } finally {
+            wb.close();
+        }
+    }
+
+    /**
+     * Add a sheet from an Excel spreadsheet to a spreadsheet object,
+     * reading it a row at a time rather than loading the whole
+     * workbook into memory
+     * @param sheetName name of the sheet to add
+     * @return created sheet object
+     * @throws IllegalArgumentException if the sheet does not exist in the Excel spreadsheet
+     * @throws Exception other error conditions may also throw exceptions
+     */
+    public AvailsSheet addSheetStreaming(String sheetName) throws Exception {
+        SheetStreamReader ssr = new SheetStreamReader(file);
+        try {
+            AvailsSheet as = new AvailsSheet(this, sheetName);
+            ssr.readSheet(ssr.openSheet(sheetName), as);
+            sheets.add(as);
+            return as;
+        } finally {
+            ssr.close();
+        }
+    }
+
+    /**
+     * Add a sheet from an Excel spreadsheet to a spreadsheet object,
+     * reading it a row at a time rather than loading the whole
+     * workbook into memory
+     * @param sheetNumber zero-based index of sheet to add
+     * @return created sheet object
+     * @throws IllegalArgumentException if the sheet does not exist in the Excel spreadsheet
+     * @throws Exception other error conditions may also throw exceptions
+     */
+    public AvailsSheet addSheetStreaming(int sheetNumber) throws Exception {
+        SheetStreamReader ssr = new SheetStreamReader(file);
+        try {
+            String[] name = new String[1];
+            InputStream is = ssr.openSheet(sheetNumber, name);
+            AvailsSheet as = new AvailsSheet(this, name[0]);
+            ssr.readSheet(is, as);
+            sheets.add(as);
+            return as;
+        } finally {
+            ssr.close();
+        }
+    }
+
+    /**
+     * Add several sheets from an Excel spreadsheet to a spreadsheet
+     * object, reading each a row at a time.  The package, shared
+     * strings and styles are parsed only once for all of the sheets.
+     * @param sheetNames names of the sheets to add
+     * @return created sheet objects, in the order requested
+     * @throws IllegalArgumentException if a sheet does not exist in the Excel spreadsheet
+     * @throws Exception other error conditions may also throw exceptions
+     */
+    public List<AvailsSheet> addSheetsStreaming(String... sheetNames) throws Exception {
+        SheetStreamReader ssr = new SheetStreamReader(file);
+        try {
+            List<String> names = ssr.getSheetNames();
+            for (String sheetName : sheetNames) {
+                if (!names.contains(sheetName))
+                    throw new IllegalArgumentException(file + ":" + sheetName + " not found");
+            }
+            return addSheetsStreaming(ssr, Arrays.asList(sheetNames));
+        } finally {
+            ssr.close();
+        }
+    }
+
+    /**
+     * Add every sheet of an Excel spreadsheet to a spreadsheet
+     * object, reading each a row at a time.  The package, shared
+     * strings and styles are parsed only once for all of the sheets.
+     * @return created sheet objects, in workbook order
+     * @throws Exception if any error is encountered (e.g. non-existant or corrupt file)
+     */
+    public List<AvailsSheet> addAllSheetsStreaming() throws Exception {
+        SheetStreamReader ssr = new SheetStreamReader(file);
+        try {
+            return addSheetsStreaming(ssr, ssr.getSheetNames());
+        } finally {
+            ssr.close();
+        }
+    }
+
+    /**
+     * Add sheets from an already-opened spreadsheet
+     * @param ssr an open streaming reader
+     * @param sheetNames names of the sheets to add; all must exist
+     * @return created sheet objects, in the order requested
+     */
+    private List<AvailsSheet> addSheetsStreaming(SheetStreamReader ssr, List<String> sheetNames)
+        throws Exception {
+        ArrayList<AvailsSheet> added = new ArrayList<AvailsSheet>(sheetNames.size());
+        for (String sheetName : sheetNames) {
+            AvailsSheet as = new AvailsSheet(this, sheetName);
+            ssr.readSheet(ssr.openSheet(sheetName), as);
+            sheets.add(as);
+            added.add(as);
+        }
+        return added;
+    }
+
+    /**
+     * Convert a sheet of an Excel spreadsheet directly to an Avails
+     * XML document.  The sheet is read a row at a time; each row is
+     * validated, written out as an Avail element and then dropped, so
+     * memory use does not grow with the size of the sheet.  The
+     * sheet is not added to this spreadsheet object.
+     * @param sheetName name of the sheet to convert
+     * @param os where the XML document is written; it is flushed but not closed
+     * @param shortDesc a short description that will appear in the document
+     * @param indent if true, the output is pretty-printed
+     * @return the number of avails written
+     * @throws IllegalArgumentException if the sheet does not exist in the Excel spreadsheet
+     * @throws Exception other error conditions may also throw exceptions
+     */
+    public int convertStreaming(String sheetName, OutputStream os, String shortDesc,
+                                boolean indent) throws Exception {
+        SheetStreamReader ssr = new SheetStreamReader(file);
+        try {
+            return convertStreaming(ssr, sheetName, os, shortDesc, indent);
+        } finally {
+            ssr.close();
+        }
+    }
+
+    /**
+     * Convert a sheet of an already-opened spreadsheet directly to an
+     * Avails XML document, as convertStreaming() does.  Converting
+     * several sheets through one reader parses the package, shared
+     * strings and styles only once.
+     * @param ssr an open streaming reader; it is not closed
+     * @param sheetName name of the sheet to convert
+     * @param os where the XML document is written; it is flushed but not closed
+     * @param shortDesc a short description that will appear in the document
+     * @param indent if true, the output is pretty-printed
+     * @return the number of avails written
+     * @throws IllegalArgumentException if the sheet does not exist in the Excel spreadsheet
+     * @throws Exception other error conditions may also throw exceptions
+     */
+    int convertStreaming(SheetStreamReader ssr, String sheetName, OutputStream os,
+                         final String shortDesc, boolean indent) throws Exception {
+        final AvailsSheet as = new AvailsSheet(this, sheetName, 0);
+        // scratch document: avails are created on it but never attached
+        final Document dom = AvailXMLWriter.newDocument();
+        final AvailXMLWriter writer = new AvailXMLWriter(os, indent);
+        final int[] count = new int[1];
+
+        writer.writeHeader();
+        ssr.readSheet(ssr.openSheet(sheetName), new SheetStreamReader.RowHandler() {
+                public void handleRow(String[] fields, int rowNum) throws Exception {
+                    if (as.scanHeader(fields) || !as.isAvail(fields))
+                        return;
+                    SheetRow sr = as.makeRow(fields, rowNum);
+                    if (sr == null)
+                        return;
+                    if (shortDesc != null && !shortDesc.equals(""))
+                        sr.setShortDesc(shortDesc);
+                    writer.writeAvail(sr.makeAvail(dom));
+                    count[0]++;
+                }
+            }, new StringPool(stringPoolSize));
+        writer.close();
+        return count[0];
+    }
+
+    /**
+     * Thrown by a RowHandler to stop reading a sheet early
+     */
+    private static class StopReading extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Determine whether a sheet of an already-opened spreadsheet is
+     * laid out as avails, i.e. whether it has the header row of a
+     * Movie, Episode or Season sheet (one naming the DisplayName,
+     * Territory and WorkType columns).  Instructions and lookup tabs
+     * don't.  The sheet is read only as far as the header row, or the
+     * first row that would be taken for an avail.
+     * @param ssr an open streaming reader; it is not closed
+     * @param sheetName name of the sheet to check
+     * @return true iff the sheet has an avails header row
+     * @throws IllegalArgumentException if the sheet does not exist in the Excel spreadsheet
+     * @throws Exception if the sheet can't be parsed
+     */
+    boolean hasAvailsHeader(SheetStreamReader ssr, String sheetName) throws Exception {
+        final AvailsSheet as = new AvailsSheet(this, sheetName, 0);
+        try {
+            ssr.readSheet(ssr.openSheet(sheetName), new SheetStreamReader.RowHandler() {
+                    public void handleRow(String[] fields, int rowNum) throws Exception {
+                        boolean header = as.scanHeader(fields);
+                        if (as.hasHeader() || (!header && as.isAvail(fields)))
+                            throw new StopReading();
+                    }
+                }, new StringPool(stringPoolSize));
+        } catch (StopReading e) {
+            // header or first avail seen; the rest of the sheet is not needed
+        }
+        return as.hasHeader();
+    }
+
+    /**
+     * Convert a sheet of an Excel spreadsheet directly to a
+     * pretty-printed Avails XML document, without holding the sheet
+     * in memory
+     * @param sheetName name of the sheet to convert
+     * @param os where the XML document is written; it is flushed but not closed
+     * @return the number of avails written
+     * @throws IllegalArgumentException if the sheet does not exist in the Excel spreadsheet
+     * @throws Exception other error conditions may also throw exceptions
+     */
+    public int convertStreaming(String sheetName, OutputStream os) throws Exception {
+        return convertStreaming(sheetName, os, null, true);
+    }
+
+    /**
+     * Add several sheets from an Excel spreadsheet to a spreadsheet
+     * object, reading the sheets concurrently.  The package is
+     * opened once and each sheet is then parsed (a row at a time) by
+     * its own task.  A sheet that fails to load is logged and does
+     * not prevent the others from loading.
+     * @param executor the executor on which sheets are read
+     * @param sheetNames names of the sheets to add
+     * @return created sheet objects, in the order requested; an
+     *         element is null if that sheet failed to load
+     * @throws IllegalArgumentException if a sheet does not exist in the Excel spreadsheet
+     * @throws Exception the first per-sheet failure, if exit-on-error policy is in effect
+     */
+    public List<AvailsSheet> addSheetsParallel(ExecutorService executor, String... sheetNames)
+        throws Exception {
+        return runSheetsParallel(executor, sheetNames, new SheetTask<AvailsSheet>() {
+                public AvailsSheet run(AvailsSheet as) {
+                    return as;
+                }
+            });
+    }
+
+    /**
+     * Load several sheets from an Excel spreadsheet and create an
+     * Avails XML document for each, processing the sheets
+     * concurrently.  Each task reads its sheet and then converts it,
+     * so one sheet may be converting while another is still being
+     * read.  A sheet that fails is logged and does not prevent the
+     * others from being converted.
+     * @param executor the executor on which sheets are processed
+     * @param shortDesc a short description that will appear in each document
+     * @param sheetNames names of the sheets to convert
+     * @return a JAXP document for each sheet, in the order requested;
+     *         an element is null if that sheet failed
+     * @throws IllegalArgumentException if a sheet does not exist in the Excel spreadsheet
+     * @throws Exception the first per-sheet failure, if exit-on-error policy is in effect
+     */
+    public List<Document> convertSheetsParallel(ExecutorService executor, final String shortDesc,
+                                                String... sheetNames) throws Exception {
+        return runSheetsParallel(executor, sheetNames, new SheetTask<Document>() {
+                public Document run(AvailsSheet as) throws Exception {
+                    return as.makeXML(shortDesc);
+                }
+            });
+    }
+
+    /**
+     * Work to be performed on a sheet once it has been loaded
+     */
+    private interface SheetTask<T> {
+        T run(AvailsSheet as) throws Exception;
+    }
+
+    /**
+     * A sheet being read by runSheetsParallel().  The job is claimed
+     * either by the worker that runs it or, if it is abandoned before
+     * it starts, by abandon(); a stream that no worker will read is
+     * closed there.
+     */
+    private static class SheetJob<T> implements Callable<T> {
+        private final SheetStreamReader ssr;
+        private final InputStream is;
+        private final AvailsSheet as;
+        private final SheetTask<T> task;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Future<T> future; // null until submitted
+
+        SheetJob(SheetStreamReader ssr, InputStream is, AvailsSheet as, SheetTask<T> task) {
+            this.ssr = ssr;
+            this.is = is;
+            this.as = as;
+            this.task = task;
+        }
+
+        public T call() throws Exception {
+            if (!claimed.compareAndSet(false, true))
+                return null; // abandoned before it started
+            try {
+                ssr.readSheet(is, as); // closes is
+                return task.run(as);
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Cancel the job if it has not completed, and wait until it is
+         * no longer using the reader; a no-op for a finished job
+         * @return true if the calling thread was interrupted while waiting
+         */
+        boolean abandon() {
+            if (future != null)
+                future.cancel(true);
+            if (claimed.compareAndSet(false, true)) { // never started
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    // nothing was read from it
+                }
+                return false;
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    finished.await();
+                    return interrupted;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+    } /* SheetJob */
+
+    /**
+     * Read sheets concurrently and apply a task to each.  Results are
+     * gathered in the order the sheets were requested, and sheets
+     * that loaded successfully are added to this object in that
+     * same order, regardless of which task finishes first.  The tasks
+     * share one SheetStreamReader; each sheet's stream is opened here,
+     * on the calling thread, and the reader's shared state is read-only
+     * while the tasks run (see SheetStreamReader).  If this returns
+     * early (an error opening or submitting a sheet, or an interrupt)
+     * the outstanding tasks are cancelled, and the reader is closed only
+     * once none of them is still using it.
+     * @param executor the executor on which sheets are processed
+     * @param sheetNames names of the sheets to process
+     * @param task work to perform on each loaded sheet
+     * @return the result for each sheet, or null where it failed
+     * @throws InterruptedException if interrupted while waiting for the tasks
+     */
+    private <T> List<T> runSheetsParallel(ExecutorService executor, String[] sheetNames,
+                                          SheetTask<T> task)
+        throws Exception {
+        SheetStreamReader ssr = new SheetStreamReader(file);
+        ArrayList<SheetJob<T>> jobs = new ArrayList<SheetJob<T>>(sheetNames.length);
+        try {
+            List<String> names = ssr.getSheetNames();
+            for (String sheetName : sheetNames) {
+                if (!names.contains(sheetName))
+                    throw new IllegalArgumentException(file + ":" + sheetName + " not found");
+            }
+
+            for (String sheetName : sheetNames) {
+                SheetJob<T> job = new SheetJob<T>(ssr, ssr.openSheet(sheetName),
+                                                  new AvailsSheet(this, sheetName), task);
+                jobs.add(job);
+                job.future = executor.submit(job);
+            }
+
+            ArrayList<T> results = new ArrayList<T>(sheetNames.length);
+            Exception firstError = null;
+            for (int i = 0; i < sheetNames.length; i++) {
+                try {
+                    results.add(jobs.get(i).future.get());
+                    sheets.add(jobs.get(i).as);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    logger.warn("Sheet " + sheetNames[i] + ": failed: " + cause);
+                    if (firstError == null)
+                        firstError = (cause instanceof Exception) ? (Exception) cause : e;
+                    results.add(null);
+                }
+            }
+            if (firstError != null && exitOnError)
+                throw firstError;
+            return results;
+        } finally {
+            // every job has finished unless we are leaving early
+            boolean interrupted = false;
+            for (SheetJob<T> job : jobs)
+                interrupted |= job.abandon();
+            ssr.close();
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Get the logging object
      * @return Logger for this instance
@@ -175,6 +625,61 @@ public class AvailSS {
         return cleanupData;
     }
 
+    /**
+     * Select how sheets added after this call hold their rows.  In
+     * columnar mode each column is dictionary-encoded, which takes far
+     * less memory when values repeat from row to row (as Territory,
+     * LicenseType, DisplayName etc. do); SheetRow objects are then
+     * created on demand as the sheet is processed.
+     * @param columnarStorage true to use columnar storage
+     */
+    public void setColumnarStorage(boolean columnarStorage) {
+        this.columnarStorage = columnarStorage;
+    }
+
+    /**
+     * Send problems found in rows added after this call to a sink,
+     * rather than logging them.  The exit-on-error policy still applies.
+     * @param diagnosticsSink the sink, or null to log problems
+     */
+    public void setDiagnosticsSink(DiagnosticsSink diagnosticsSink) {
+        this.diagnosticsSink = diagnosticsSink;
+    }
+
+    /**
+     * Get the diagnostics sink
+     * @return the sink problems are sent to, or null if they are logged
+     */
+    public DiagnosticsSink getDiagnosticsSink() {
+        return diagnosticsSink;
+    }
+
+    /**
+     * Set the size of the pool used to share repeated cell values while
+     * a sheet is loaded; each load has its own pool
+     * @param stringPoolSize the maximum number of distinct values pooled;
+     *        0 disables pooling
+     */
+    public void setStringPoolSize(int stringPoolSize) {
+        this.stringPoolSize = stringPoolSize;
+    }
+
+    /**
+     * Get the string pool size
+     * @return the maximum number of distinct values pooled per load
+     */
+    public int getStringPoolSize() {
+        return stringPoolSize;
+    }
+
+    /**
+     * Get the row storage option
+     * @return true if sheets store their rows by column
+     */
+    public boolean getColumnarStorage() {
+        return columnarStorage;
+    }
+
     /**
      * Dump raw contents of specified sheet
      * @param sheetName name of the sheet to dump
@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.math.BigInteger;
 import java.util.List;
@@ -43,6 +44,10 @@ import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.Duration;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
 
 import org.w3c.dom.*;
 
@@ -64,6 +69,7 @@ import com.movielabs.schema.mdmec.v2.PublisherType;
 
 import org.apache.poi.POIXMLProperties;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.ss.usermodel.Cell;
@@ -77,9 +83,10 @@ public class AvailXML {
     protected JAXBContext jaxbContext;
     protected Unmarshaller jaxbUnmarshaller = null;
     protected List<AvailType> availList;
-    protected XSSFWorkbook workbook;
+    protected Workbook workbook;
     protected Sheet movieSheet, episodeSheet;
     protected int currentMovieRow, currentEpisodeRow;
+    protected boolean streaming;
     
     final static String[][] movieRows = { 
         {
@@ -137,41 +144,200 @@ public class AvailXML {
         }
     };
 
+    // JAXBContext is thread-safe and expensive to create, so one is
+    // shared by all instances; Unmarshallers are not, so each thread
+    // keeps its own
+    private static JAXBContext sharedContext;
+    private static final ThreadLocal<Unmarshaller> unmarshallers = new ThreadLocal<Unmarshaller>();
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    /**
+     * Get the JAXB context for Avails documents, creating it on first use
+     * @return the shared context
+     * @throws JAXBException if the context can't be created
+     */
+    protected static synchronized JAXBContext getJAXBContext() throws JAXBException {
+        if (sharedContext == null)
+            sharedContext = JAXBContext.newInstance(AvailListType.class);
+        return sharedContext;
+    }
+
+    /**
+     * Get an Unmarshaller for Avails documents that may be used by the calling thread
+     * @return the calling thread's Unmarshaller
+     * @throws JAXBException if the Unmarshaller can't be created
+     */
+    protected static Unmarshaller getUnmarshaller() throws JAXBException {
+        Unmarshaller u = unmarshallers.get();
+        if (u == null) {
+            u = getJAXBContext().createUnmarshaller();
+            unmarshallers.set(u);
+        }
+        return u;
+    }
+
+    /**
+     * Load an Avails XML file
+     * @param xmlFile name of the file, which may be gzip-compressed
+     * @param logger where problems are reported
+     * @throws JAXBException if the file can't be read or is not a valid Avails document
+     */
     public AvailXML(String xmlFile, Logger logger) throws JAXBException {
         this.logger = logger;
-        JAXBElement<AvailListType> e = null;
         this.xmlFile = xmlFile;
-        File file = new File(xmlFile);
+        loadFile(xmlFile);
+    }
+
+    /**
+     * Load an Avails XML document from a stream
+     * @param is the document; it is not closed
+     * @param logger where problems are reported
+     * @throws JAXBException if the stream can't be read or is not a valid Avails document
+     */
+    public AvailXML(InputStream is, Logger logger) throws JAXBException {
+        this(new StreamSource(is), logger);
+    }
+
+    /**
+     * Load an Avails XML document
+     * @param source the document
+     * @param logger where problems are reported
+     * @throws JAXBException if the source can't be read or is not a valid Avails document
+     */
+    public AvailXML(Source source, Logger logger) throws JAXBException {
+        this.logger = logger;
+        this.xmlFile = source.getSystemId();
+        load(source);
+    }
+
+    /**
+     * Prepare to convert an Avails XML file
+     * @param xmlFile name of the file, which may be gzip-compressed
+     * @param logger where problems are reported
+     * @param streaming if true, the file is not loaded; instead makeSS()
+     *        reads it one Avail element at a time, so that documents too
+     *        large to fit in memory can be converted
+     * @throws JAXBException if streaming is false and the file can't be
+     *         read or is not a valid Avails document
+     */
+    public AvailXML(String xmlFile, Logger logger, boolean streaming) throws JAXBException {
+        this.logger = logger;
+        this.xmlFile = xmlFile;
+        this.streaming = streaming;
+        if (streaming)
+            jaxbContext = getJAXBContext();
+        else
+            loadFile(xmlFile);
+    }
+
+    private void loadFile(String xmlFile) throws JAXBException {
         try {
-            jaxbContext = JAXBContext.newInstance(AvailListType.class);
-            jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-            e = (JAXBElement<AvailListType>) jaxbUnmarshaller.unmarshal(file);
-        } catch (JAXBException ex) {
-            ex.printStackTrace();
+            InputStream is = AvailsIO.openInput(xmlFile);
+            try {
+                load(new StreamSource(is, new File(xmlFile).toURI().toString()));
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            throw new JAXBException("can't read '" + xmlFile + "': " + e, e);
         }
+    }
+
+    private void load(Source source) throws JAXBException {
+        jaxbContext = getJAXBContext();
+        jaxbUnmarshaller = getUnmarshaller();
+        JAXBElement<AvailListType> e = jaxbUnmarshaller.unmarshal(source, AvailListType.class);
         availList = e.getValue().getAvail();
     }
 
+    /**
+     * Read the Avail elements of the XML file one at a time, passing each
+     * to handleAvail(); only one avail is held in memory at a time
+     * @throws Exception if the file can't be read or an avail can't be unmarshalled
+     */
+    protected void streamAvails() throws Exception {
+        Unmarshaller u = getUnmarshaller();
+        InputStream is = AvailsIO.openInput(xmlFile);
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(is);
+            while (reader.hasNext()) {
+                if (reader.isStartElement() && reader.getLocalName().equals("Avail") &&
+                    AvailsSheet.AVAILS_NS.equals(reader.getNamespaceURI())) {
+                    // leaves the reader on the event following </Avail>
+                    handleAvail(u.unmarshal(reader, AvailType.class).getValue());
+                } else {
+                    reader.next();
+                }
+            }
+        } finally {
+            if (reader != null)
+                reader.close();
+            is.close();
+        }
+    }
+
     public void makeSS(String ssFile) {
-        workbook = new XSSFWorkbook();
+        makeSS(ssFile, 0, false);
+    }
 
-        POIXMLProperties xmlProps = workbook.getProperties();    
+    /**
+     * Create an Excel spreadsheet from the avails
+     * @param ssFile name of the .xlsx file to be written
+     * @param windowSize if greater than zero, the spreadsheet is written
+     *        with a streaming SXSSFWorkbook that keeps only this many rows
+     *        per sheet in memory, flushing older rows to temporary files;
+     *        otherwise the whole workbook is built in memory
+     * @param compressTempFiles if true, gzip the temporary files used by
+     *        a streaming workbook (slower, but they are much smaller)
+     */
+    public void makeSS(String ssFile, int windowSize, boolean compressTempFiles) {
+        XSSFWorkbook xssf = new XSSFWorkbook();
+
+        POIXMLProperties xmlProps = xssf.getProperties();    
         POIXMLProperties.CoreProperties coreProps =  xmlProps.getCoreProperties();
-        coreProps.setDescription("created by availslib from '" + xmlFile + "'");
+        if (xmlFile != null)
+            coreProps.setDescription("created by availslib from '" + xmlFile + "'");
+        else
+            coreProps.setDescription("created by availslib");
 
-        for (AvailType a : availList)
-            handleAvail(a);
+        SXSSFWorkbook sxssf = null;
+        if (windowSize > 0) {
+            sxssf = new SXSSFWorkbook(xssf, windowSize, compressTempFiles);
+            workbook = sxssf;
+        } else {
+            workbook = xssf;
+        }
+        movieSheetInitialized = false;
+        episodeSheetInitialized = false;
 
         try {
-            FileOutputStream out = 
-                new FileOutputStream(new File(ssFile), false);
-            workbook.write(out);
-            out.close();
-            System.out.println("Excel written successfully..");
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (streaming) {
+                try {
+                    streamAvails();
+                } catch (Exception e) {
+                    logger.error("can't convert '" + xmlFile + "': " + e);
+                    return;
+                }
+            } else {
+                for (AvailType a : availList)
+                    handleAvail(a);
+            }
+
+            try {
+                FileOutputStream out = 
+                    new FileOutputStream(new File(ssFile), false);
+                workbook.write(out);
+                out.close();
+                System.out.println("Excel written successfully..");
+            } catch (FileNotFoundException e) {
+                e.printStackTrace();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } finally {
+            if (sxssf != null)
+                sxssf.dispose(); // delete temporary files
         }
     }
 
@@ -0,0 +1,483 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.*;
+
+/**
+ * Writes an Avails XML document one avail at a time.  Each Avail
+ * element generated by SheetRow.makeAvail() is serialized as soon as
+ * it is passed in and can then be discarded, so memory use depends on
+ * the size of an avail rather than the size of the document.
+ * <p>
+ * Output is encoded as UTF-8 directly into a byte buffer.  The start
+ * and end tags of every element name are encoded once and then
+ * copied, and text that needs neither escaping nor multi-byte
+ * encoding (the usual case) is copied a char at a time.  Buffers are
+ * pooled, so a writer allocates nothing of its own per avail.
+ * Constant fragments in documents from newDocument() are
+ * placeholders; each is encoded once per writer and then copied.
+ */
+class AvailXMLWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED = 16;
+    private static final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private static final byte[] XML_DECL = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    private static final byte[] INDENT = ascii("    ");
+    private static final byte[] COMMENT_START = ascii("<!--");
+    private static final byte[] COMMENT_END = ascii("-->");
+    private static final byte[] AVAIL_LIST_END = ascii("</AvailList>");
+    private static final byte[] AMP = ascii("&amp;");
+    private static final byte[] LT = ascii("&lt;");
+    private static final byte[] GT = ascii("&gt;");
+    private static final byte[] QUOT = ascii("&quot;");
+
+    /*
+     * Encoded tags, indexed by element name: [0] is "<name", [1] is
+     * "</name>".  Seeded with the Avails v2.0 vocabulary SheetRow
+     * generates; anything else is added the first time it is seen.
+     */
+    private static final ConcurrentHashMap<String, byte[][]> tags = new ConcurrentHashMap<String, byte[][]>();
+    static {
+        String[] vocabulary = {
+            "Avail", "ALID", "Disposition", "EntryType", "Licensor", "ServiceProvider",
+            "md:DisplayName", "mdmec:ContactInfo", "md:Name", "md:PrimaryEmail",
+            "AvailType", "ShortDescription", "Asset", "WorkType", "Metadata",
+            "EpisodeMetadata", "SeasonMetadata", "SeriesMetadata",
+            "TitleDisplayUnlimited", "TitleInternalAlias",
+            "SeasonTitleDisplayUnlimited", "SeasonTitleInternalAlias",
+            "SeriesTitleDisplayUnlimited", "SeriesTitleInternalAlias",
+            "SeasonContentID", "SeriesContentID", "EditEIDR-S", "EncodeID",
+            "AltIdentifier", "SeasonAltIdentifier", "SeriesAltIdentifier",
+            "md:Namespace", "md:Identifier", "md:Location", "ReleaseDate", "RunLength",
+            "ReleaseHistory", "md:ReleaseType", "md:Date", "USACaptionsExemptionReason",
+            "Ratings", "md:Rating", "md:Region", "md:country", "md:System", "md:Value",
+            "md:Reason", "EpisodeNumber", "SeasonNumber", "md:Number",
+            "NumberOfEpisodes", "NumberOfSeasons", "CompanyDisplayCredit",
+            "md:DisplayString", "Transaction", "LicenseType", "Description",
+            "Territory", "Start", "StartCondition", "End", "EndCondition",
+            "StoreLanguage", "LicenseRightsDescription", "FormatProfile",
+            "LocalizationOffering", "Term", "Money", "Event", "Duration", "Text",
+            "Language", "ExceptionFlag", "OtherInstructions", "ContractID",
+        };
+        for (String name : vocabulary)
+            tags.put(name, encodeTags(name));
+    }
+
+    private OutputStream os;
+    private WritableByteChannel channel;
+    private ByteBuffer buf;
+    private byte[] b; // buf's backing array
+    private boolean indent;
+    // encoded constant fragments, by depth and then by key
+    private ArrayList<HashMap<String, byte[]>> fragments = new ArrayList<HashMap<String, byte[]>>();
+
+    /**
+     * Create a writer; nothing is written until writeHeader() is called
+     * @param os where the document is written; it is not closed by this class
+     * @param indent if true, pretty-print the output (4 spaces per level)
+     */
+    AvailXMLWriter(OutputStream os, boolean indent) {
+        this.os = os;
+        this.indent = indent;
+        acquire();
+    }
+
+    /**
+     * Create a writer on a channel, e.g. a FileChannel; nothing is
+     * written until writeHeader() is called
+     * @param channel where the document is written; it is not closed by this class
+     * @param indent if true, pretty-print the output (4 spaces per level)
+     */
+    AvailXMLWriter(WritableByteChannel channel, boolean indent) {
+        this.channel = channel;
+        this.indent = indent;
+        acquire();
+    }
+
+    /**
+     * Create a scratch document on which to build avails that will
+     * only be passed to writeAvail().  Its constant fragments are
+     * placeholders, which are written out from bytes encoded once.
+     * @return a new, empty document
+     * @throws ParserConfigurationException if no DocumentBuilder is available
+     */
+    static Document newDocument() throws ParserConfigurationException {
+        Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        FragmentCache.setStreaming(dom);
+        return dom;
+    }
+
+    /**
+     * Write the XML declaration and the opening AvailList tag, with
+     * the same namespace declarations AvailsSheet.makeXML() uses
+     * @throws IOException if an I/O error occurs
+     */
+    void writeHeader() throws IOException {
+        put(XML_DECL);
+        newline(0);
+        putASCII("<AvailList");
+        writeAttribute("xmlns", AvailsSheet.AVAILS_NS);
+        writeAttribute("xmlns:xsi", AvailsSheet.XSI_NS);
+        writeAttribute("xmlns:md", AvailsSheet.MD_NS);
+        writeAttribute("xmlns:mdmec", AvailsSheet.MDMEC_NS);
+        writeAttribute("xsi:schemaLocation", AvailsSheet.SCHEMA_LOCATION);
+        put((byte) '>');
+    }
+
+    /**
+     * Write an avail as a child of AvailList
+     * @param avail an Avail element; it need not be attached to its document
+     * @throws IOException if an I/O error occurs
+     */
+    void writeAvail(Element avail) throws IOException {
+        writeElement(avail, 1);
+    }
+
+    /**
+     * Copy already-serialized avails, e.g. the output of another
+     * writer's finish(), into the document
+     * @param avails a sequence of complete Avail elements, encoded as UTF-8
+     * @throws IOException if an I/O error occurs
+     */
+    void writeFragment(byte[] avails) throws IOException {
+        put(avails);
+    }
+
+    /**
+     * Flush the avails written so far without writing a header or
+     * closing AvailList; for a writer that produces a fragment of a
+     * document.  The writer's buffer is returned to the pool, so the
+     * writer can't be used afterwards.
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException {
+        try {
+            drain();
+            if (os != null)
+                os.flush();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Close AvailList and flush the output.  The writer's buffer is
+     * returned to the pool, so the writer can't be used afterwards.
+     * @throws IOException if an I/O error occurs
+     */
+    void close() throws IOException {
+        try {
+            newline(0);
+            put(AVAIL_LIST_END);
+            if (indent)
+                put((byte) '\n');
+            drain();
+            if (os != null)
+                os.flush();
+        } finally {
+            release();
+        }
+    }
+
+    private void writeElement(Element e, int depth) throws IOException {
+        newline(depth);
+        String name = e.getNodeName();
+        byte[][] tag = tags.get(name);
+        if (tag == null) {
+            tag = encodeTags(name);
+            tags.putIfAbsent(name, tag);
+        }
+        put(tag[0]);
+        if (e.hasAttributes())
+            writeAttributes(e);
+        Node child = e.getFirstChild();
+        if (child == null) {
+            put((byte) '/');
+            put((byte) '>');
+            return;
+        }
+        put((byte) '>');
+        boolean nested = false; // true if text should not be kept on one line
+        for (; child != null; child = child.getNextSibling()) {
+            switch(child.getNodeType()) {
+            case Node.ELEMENT_NODE:
+            case Node.COMMENT_NODE:
+                writeNode(child, depth + 1);
+                nested = true;
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                if (FragmentCache.PI_TARGET.equals(child.getNodeName())) {
+                    put(fragment(child.getNodeValue(), depth + 1));
+                    nested = true;
+                }
+                break;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+                putText(child.getNodeValue(), true, false);
+                break;
+            }
+        }
+        if (nested)
+            newline(depth);
+        put(tag[1]);
+    }
+
+    /**
+     * Write an element or comment on a line of its own
+     */
+    private void writeNode(Node n, int depth) throws IOException {
+        if (n.getNodeType() == Node.ELEMENT_NODE) {
+            writeElement((Element) n, depth);
+        } else {
+            newline(depth);
+            put(COMMENT_START);
+            putText(n.getNodeValue(), false, false);
+            put(COMMENT_END);
+        }
+    }
+
+    /**
+     * Get the encoding of a constant fragment, encoding it the first
+     * time it is seen at a given depth
+     * @param key the data of the placeholder standing for the fragment
+     * @param depth the depth at which the fragment appears
+     * @return the fragment as written by writeNode()
+     */
+    private byte[] fragment(String key, int depth) throws IOException {
+        while (fragments.size() <= depth)
+            fragments.add(new HashMap<String, byte[]>());
+        HashMap<String, byte[]> atDepth = fragments.get(depth);
+        byte[] ret = atDepth.get(key);
+        if (ret == null) {
+            Node prototype = FragmentCache.getPrototype(key);
+            if (prototype == null)
+                throw new IllegalArgumentException("unknown fragment: " + key);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            AvailXMLWriter w = new AvailXMLWriter(bos, indent);
+            w.writeNode(prototype, depth);
+            w.finish();
+            ret = bos.toByteArray();
+            atDepth.put(key, ret);
+        }
+        return ret;
+    }
+
+    private void writeAttributes(Element e) throws IOException {
+        NamedNodeMap attrs = e.getAttributes();
+        for (int i=0; i<attrs.getLength(); i++) {
+            Node a = attrs.item(i);
+            writeAttribute(a.getNodeName(), a.getNodeValue());
+        }
+    }
+
+    private void writeAttribute(String name, String value) throws IOException {
+        put((byte) ' ');
+        putText(name, false, false);
+        put((byte) '=');
+        put((byte) '"');
+        putText(value, true, true);
+        put((byte) '"');
+    }
+
+    private void newline(int depth) throws IOException {
+        if (!indent)
+            return;
+        put((byte) '\n');
+        for (int i=0; i<depth; i++)
+            put(INDENT);
+    }
+
+    /* ------------------------------------------------------------------
+     * Encoding and buffering
+     * ------------------------------------------------------------------ */
+
+    /**
+     * Encode a string as UTF-8, optionally escaping markup characters
+     * @param s the text
+     * @param escape if true, replace &amp;, &lt; and &gt; with entity references
+     * @param quote if true, also replace double quotes
+     */
+    private void putText(String s, boolean escape, boolean quote) throws IOException {
+        int len = s.length();
+        // fast path: plain ASCII that fits in the buffer
+        if (len <= b.length) {
+            if (buf.remaining() < len)
+                drain();
+            int pos = buf.position();
+            int i = 0;
+            for (; i<len; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80 || (escape && (c == '&' || c == '<' || c == '>' || (quote && c == '"'))))
+                    break;
+                b[pos + i] = (byte) c;
+            }
+            buf.position(pos + i);
+            if (i == len)
+                return;
+            putTextSlow(s, i, escape, quote);
+            return;
+        }
+        putTextSlow(s, 0, escape, quote);
+    }
+
+    private void putTextSlow(String s, int start, boolean escape, boolean quote) throws IOException {
+        int len = s.length();
+        for (int i=start; i<len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (escape) {
+                    switch(c) {
+                    case '&':
+                        put(AMP);
+                        continue;
+                    case '<':
+                        put(LT);
+                        continue;
+                    case '>':
+                        put(GT);
+                        continue;
+                    case '"':
+                        if (quote) {
+                            put(QUOT);
+                            continue;
+                        }
+                        break;
+                    }
+                }
+                put((byte) c);
+            } else if (c < 0x800) {
+                ensure(2);
+                buf.put((byte) (0xc0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len &&
+                       Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                buf.put((byte) (0xf0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+                buf.put((byte) (0x80 | (cp & 0x3f)));
+            } else {
+                if (Character.isSurrogate(c))
+                    c = '?'; // unpaired; can't be encoded
+                ensure(3);
+                buf.put((byte) (0xe0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buf.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    private void putASCII(String s) throws IOException {
+        putText(s, false, false);
+    }
+
+    private void put(byte c) throws IOException {
+        if (!buf.hasRemaining())
+            drain();
+        buf.put(c);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        if (buf.remaining() < bytes.length) {
+            drain();
+            if (bytes.length > b.length) { // too big to buffer
+                writeOut(ByteBuffer.wrap(bytes));
+                return;
+            }
+        }
+        buf.put(bytes);
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buf.remaining() < n)
+            drain();
+    }
+
+    /**
+     * Write out and empty the buffer
+     */
+    private void drain() throws IOException {
+        buf.flip();
+        writeOut(buf);
+        buf.clear();
+    }
+
+    private void writeOut(ByteBuffer bb) throws IOException {
+        if (channel != null) {
+            while (bb.hasRemaining())
+                channel.write(bb);
+        } else {
+            os.write(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+            bb.position(bb.limit());
+        }
+    }
+
+    private void acquire() {
+        buf = pool.poll();
+        if (buf == null)
+            buf = ByteBuffer.allocate(BUFFER_SIZE);
+        b = buf.array();
+    }
+
+    private void release() {
+        if (buf == null)
+            return;
+        buf.clear();
+        if (pool.size() < MAX_POOLED)
+            pool.offer(buf);
+        buf = null;
+        b = null;
+    }
+
+    private static byte[][] encodeTags(String name) {
+        return new byte[][] { utf8("<" + name), utf8("</" + name + ">") };
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Converts many workbooks in one run.  Each workbook is converted on
+ * one of a fixed number of worker threads, sheet by sheet, with
+ * AvailSS.convertStreaming(), so memory use is bounded by the number
+ * of workers rather than the size of the workbooks.  Each sheet laid
+ * out as avails is written to its own XML file; other sheets are
+ * skipped.  A conversion that
+ * runs longer than the timeout is interrupted and reported as timed
+ * out; problems found in rows are counted rather than logged, and
+ * never stop a workbook from being converted.
+ */
+public class AvailsBatch {
+    public static final String WORKBOOK_SUFFIX = ".xlsx";
+
+    private final Logger logger;
+    private final int threads;
+    private long timeoutMillis;
+    private File outputDir;
+    private String shortDesc;
+    private boolean indent = true;
+    private boolean compress;
+    private boolean cleanupData = true;
+    private int maxErrors = 100;
+
+    /**
+     * Create a batch converter
+     * @param logger a log4j logger object
+     * @param threads the number of workbooks converted at once
+     */
+    public AvailsBatch(Logger logger, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1");
+        this.logger = logger;
+        this.threads = threads;
+    }
+
+    /**
+     * Set the longest a single workbook may take to convert
+     * @param timeout the limit, or 0 for none (the default)
+     * @param unit the unit of timeout
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        timeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * @return the longest a single workbook may take to convert, in
+     *         milliseconds; 0 if there is no limit
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Set where the XML files are written
+     * @param outputDir a directory, or null to write each file next to its workbook
+     */
+    public void setOutputDirectory(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    public File getOutputDirectory() {
+        return outputDir;
+    }
+
+    /**
+     * @param shortDesc a short description that will appear in every document
+     */
+    public void setShortDesc(String shortDesc) {
+        this.shortDesc = shortDesc;
+    }
+
+    /**
+     * @param indent if true (the default), the output is pretty-printed
+     */
+    public void setIndent(boolean indent) {
+        this.indent = indent;
+    }
+
+    /**
+     * @param compress if true, the XML files are gzip-compressed
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * @param cleanupData the cleanup policy passed to AvailSS for each workbook
+     */
+    public void setCleanupData(boolean cleanupData) {
+        this.cleanupData = cleanupData;
+    }
+
+    /**
+     * @param maxErrors the number of problems kept in each FileReport;
+     *        the rest are only counted
+     */
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Find the workbooks in a directory.  Excel's lock files ("~$...")
+     * are skipped.
+     * @param dir the directory to search; subdirectories are not searched
+     * @return the .xlsx files found, sorted by name
+     * @throws IOException if the directory can't be read
+     */
+    public static List<File> listWorkbooks(File dir) throws IOException {
+        File[] found = dir.listFiles();
+        if (found == null)
+            throw new IOException(dir + ": not a readable directory");
+        ArrayList<File> ret = new ArrayList<File>();
+        for (File f : found) {
+            String name = f.getName();
+            if (f.isFile() && !name.startsWith("~$")
+                && name.regionMatches(true, name.length() - WORKBOOK_SUFFIX.length(),
+                                      WORKBOOK_SUFFIX, 0, WORKBOOK_SUFFIX.length()))
+                ret.add(f);
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    /**
+     * Convert every workbook in a directory
+     * @param dir the directory holding the workbooks
+     * @return a report on the batch
+     * @throws IOException if the directory can't be read
+     * @throws InterruptedException if interrupted while waiting for conversions
+     */
+    public BatchReport convertDirectory(File dir) throws IOException, InterruptedException {
+        return convert(listWorkbooks(dir));
+    }
+
+    /**
+     * Convert a list of workbooks concurrently.  Workbooks are
+     * started largest first, so that a big one is not left running
+     * alone at the end of the batch; the report lists them in the
+     * order given.  A workbook that fails or times out does not
+     * affect the others.
+     * @param files the workbooks to convert
+     * @return a report on the batch
+     * @throws InterruptedException if interrupted while waiting for
+     *         conversions; those still running are abandoned
+     */
+    public BatchReport convert(List<File> files) throws InterruptedException {
+        long start = System.nanoTime();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                                             new LinkedBlockingQueue<Runnable>(),
+                                                             daemonThreads("batch"));
+        ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, daemonThreads("batch watchdog"));
+        watchdog.setRemoveOnCancelPolicy(true);
+        try {
+            ArrayList<FileTask> tasks = new ArrayList<FileTask>(files.size());
+            for (File f : files)
+                tasks.add(new FileTask(f, watchdog));
+            ArrayList<FileTask> bySize = new ArrayList<FileTask>(tasks);
+            Collections.sort(bySize, new Comparator<FileTask>() {
+                    public int compare(FileTask a, FileTask b) {
+                        return Long.compare(b.size, a.size);
+                    }
+                });
+            for (FileTask t : bySize)
+                executor.execute(t);
+
+            ArrayList<FileReport> reports = new ArrayList<FileReport>(tasks.size());
+            for (FileTask t : tasks) {
+                FileReport r = t.await();
+                logger.info(r.toString());
+                reports.add(r);
+            }
+            return new BatchReport(reports, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            // workers that ignored an interrupt are abandoned; the threads are daemons
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * The conversion of one workbook.  The worker fills in its own
+     * FileReport; if the watchdog cancels the task, a copy is made
+     * for the batch report so the worker can't change it afterwards.
+     */
+    private class FileTask extends FutureTask<FileReport> {
+        private final File file;
+        private final long size;
+        private final ScheduledExecutorService watchdog;
+        private final FileReport report;
+        private volatile long started;
+        private volatile long cancelled;
+
+        FileTask(File file, ScheduledExecutorService watchdog) {
+            this(file, watchdog, new FileReport(file, maxErrors));
+        }
+
+        private FileTask(final File file, ScheduledExecutorService watchdog, final FileReport report) {
+            super(new Callable<FileReport>() {
+                    public FileReport call() throws Exception {
+                        convertFile(file, report);
+                        return report;
+                    }
+                });
+            this.file = file;
+            this.size = file.length();
+            this.watchdog = watchdog;
+            this.report = report;
+        }
+
+        public void run() {
+            started = System.nanoTime();
+            ScheduledFuture<?> timer = null;
+            if (timeoutMillis > 0) {
+                timer = watchdog.schedule(new Runnable() {
+                        public void run() {
+                            cancelled = System.nanoTime();
+                            if (cancel(true))
+                                logger.warn(file + ": timed out; interrupting conversion");
+                        }
+                    }, timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            try {
+                super.run();
+            } finally {
+                if (timer != null)
+                    timer.cancel(false);
+            }
+        }
+
+        /**
+         * Wait for the conversion to end
+         * @return the report for this workbook
+         */
+        FileReport await() throws InterruptedException {
+            try {
+                return get();
+            } catch (CancellationException e) {
+                FileReport r = new FileReport(file, maxErrors);
+                r.addAll(report);
+                r.setStatus(FileReport.Status.TIMED_OUT);
+                r.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(cancelled - started));
+                return r;
+            } catch (ExecutionException e) { // convertFile() reports its own failures
+                FileReport r = new FileReport(file, maxErrors);
+                r.setStatus(FileReport.Status.FAILED);
+                r.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                r.setFailure(e.getCause());
+                return r;
+            }
+        }
+    } /* FileTask */
+
+    /**
+     * Convert each avails sheet of a workbook to its own XML file.
+     * The workbook is opened once for all of its sheets.  Sheets
+     * without an avails header row (instructions, lookup tables and
+     * the like) and sheets with no avails are skipped.  If the
+     * conversion fails, the files already written are deleted.
+     * @param file the workbook
+     * @param report receives the outcome and every problem found
+     */
+    private void convertFile(File file, FileReport report) {
+        long start = System.nanoTime();
+        ArrayList<File> written = new ArrayList<File>();
+        try {
+            AvailSS ss = new AvailSS(file.getPath(), logger, false, cleanupData);
+            ss.setDiagnosticsSink(report);
+            SheetStreamReader ssr = new SheetStreamReader(file.getPath());
+            try {
+                for (String sheetName : ssr.getSheetNames()) {
+                    if (!ss.hasAvailsHeader(ssr, sheetName)) {
+                        logger.info(file + ": sheet " + sheetName + " skipped: no avails header");
+                        report.addSkippedSheet(sheetName);
+                        continue;
+                    }
+                    File out = outputFile(file, sheetName);
+                    written.add(out);
+                    int avails = convertSheet(ss, ssr, sheetName, out);
+                    if (avails == 0) {
+                        out.delete();
+                        written.remove(out);
+                        logger.info(file + ": sheet " + sheetName + " skipped: no avails");
+                        report.addSkippedSheet(sheetName);
+                        continue;
+                    }
+                    report.addSheet(out, avails);
+                }
+            } finally {
+                ssr.close();
+            }
+            report.setStatus(FileReport.Status.OK);
+        } catch (Exception e) {
+            for (File out : written)
+                out.delete();
+            report.setStatus(FileReport.Status.FAILED);
+            report.setFailure(e);
+        }
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Convert one sheet to a file
+     * @return the number of avails written
+     */
+    private int convertSheet(AvailSS ss, SheetStreamReader ssr, String sheetName, File out)
+        throws Exception {
+        OutputStream os = AvailsIO.openOutput(out.getPath(), compress);
+        try {
+            return ss.convertStreaming(ssr, sheetName, os, shortDesc, indent);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Name the XML file for a sheet: the workbook's name without its
+     * suffix, then the sheet's name with anything other than letters,
+     * digits, '.', '-' and '_' replaced by '_'
+     */
+    private File outputFile(File workbook, String sheetName) {
+        String base = workbook.getName();
+        int dot = base.lastIndexOf('.');
+        if (dot > 0)
+            base = base.substring(0, dot);
+        String name = base + "-" + sheetName.replaceAll("[^A-Za-z0-9._-]", "_") + ".xml";
+        if (compress)
+            name += AvailsIO.GZIP_SUFFIX;
+        File dir = (outputDir != null) ? outputDir : workbook.getAbsoluteFile().getParentFile();
+        return new File(dir, name);
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + " " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Command-line entry point:
+     * AvailsBatch [-threads n] [-timeout seconds] [-out dir] [-desc text] [-gz]
+     *             file-or-directory...
+     * Exits with status 1 unless every workbook was converted.
+     * @param args the command-line arguments
+     * @throws Exception if the arguments are invalid
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeout = 0;
+        File outputDir = null;
+        String shortDesc = null;
+        boolean compress = false;
+        ArrayList<File> files = new ArrayList<File>();
+        for (int i=0; i<args.length; i++) {
+            switch(args[i]) {
+            case "-threads":
+                threads = Integer.parseInt(args[++i]);
+                break;
+            case "-timeout":
+                timeout = Long.parseLong(args[++i]);
+                break;
+            case "-out":
+                outputDir = new File(args[++i]);
+                break;
+            case "-desc":
+                shortDesc = args[++i];
+                break;
+            case "-gz":
+                compress = true;
+                break;
+            default:
+                File f = new File(args[i]);
+                if (f.isDirectory())
+                    files.addAll(listWorkbooks(f));
+                else
+                    files.add(f);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("usage: AvailsBatch [-threads n] [-timeout seconds] [-out dir] [-desc text] [-gz] file-or-directory...");
+            System.exit(1);
+        }
+        AvailsBatch batch = new AvailsBatch(LogManager.getLogger(AvailsBatch.class), threads);
+        batch.setTimeout(timeout, TimeUnit.SECONDS);
+        batch.setOutputDirectory(outputDir);
+        batch.setShortDesc(shortDesc);
+        batch.setCompress(compress);
+        BatchReport report = batch.convert(files);
+        System.out.println(report);
+        System.exit(report.isSuccessful() ? 0 : 1);
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Writes synthetic avails spreadsheets for load and scaling tests.
+ * Movie, Episode and Season sheets are generated in the column
+ * layouts that Movie, Episode and Season expect, with the two header
+ * rows AvailXML writes.  A configurable fraction of rows is made
+ * dirty by corrupting one cell with a value that validation should
+ * reject.  Rows are written through an SXSSFWorkbook, so only a small
+ * window of rows is ever in memory and sheets of millions of rows can
+ * be produced.  Output is determined entirely by the seed.
+ */
+public class AvailsGenerator {
+    private static final String[] TERRITORIES = { "US", "CA", "GB", "FR", "DE", "JP", "AU", "BR" };
+    private static final String[] LANGUAGES   = { "en", "en", "en", "fr", "de", "ja", "en", "pt" };
+    private static final String[] LICENSES    = { "EST", "VOD", "SVOD", "POEST" };
+    private static final String[] PROFILES    = { "SD", "HD", "3D" };
+    private static final String[] LRDS        = { "New Release", "Library", "Mega-Library", "Free" };
+    private static final String[] LOCALIZATIONS = { "sub", "dub", "subdub", "any" };
+
+    /*
+     * Dirty values, and the column each is put in for a Movie,
+     * Episode and Season row (-1 if the layout has no such column)
+     */
+    private static final String[] DIRTY = {
+        "USA",             // Territory
+        "english",         // StoreLanguage
+        "31/12/2015",      // Start
+        "Rental",          // LicenseType
+        "4K",              // FormatProfile
+        "Film",            // WorkType
+        "Full Extract Now",// EntryType
+        "15",              // ReleaseYear
+        "10.5240/XXXX",    // ProductID
+        "90 minutes",      // TotalRunTime
+    };
+    private static final int[] MOVIE_DIRTY   = { 2, 1, 11,  8, 10, 3, 4, 27, 20, 41 };
+    private static final int[] EPISODE_DIRTY = { 2, 1, 23, 20, 22, 3, 4, 40, 35, 55 };
+    private static final int[] SEASON_DIRTY  = { 2, 1, 23, 20, 22, 3, 4, 40, -1, -1 };
+
+    private Random random;
+    private double errorRate;
+    private int windowSize = 100;
+    private int dirtyRows;
+
+    /**
+     * Create a generator
+     * @param seed seed for the random choice of values and of dirty rows
+     */
+    public AvailsGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Set the fraction of rows that contain an invalid value
+     * @param errorRate a value from 0 (every row is valid) to 1 (every row is dirty)
+     * @throws IllegalArgumentException if errorRate is out of range
+     */
+    public void setErrorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1)
+            throw new IllegalArgumentException("error rate " + errorRate + " not in [0, 1]");
+        this.errorRate = errorRate;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Set the number of rows SXSSF keeps in memory before flushing
+     * them to a temporary file
+     * @param windowSize the number of rows; must be positive
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize <= 0)
+            throw new IllegalArgumentException("window size must be positive");
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Get the number of dirty rows written since this generator was created
+     * @return the number of rows with an invalid value
+     */
+    public int getDirtyRows() {
+        return dirtyRows;
+    }
+
+    /**
+     * Write a spreadsheet to a file
+     * @param file name of the Excel .xlsx file to create
+     * @param movies number of rows in the "Movie" sheet; the sheet is omitted if 0
+     * @param episodes number of rows in the "Episode" sheet; the sheet is omitted if 0
+     * @param seasons number of rows in the "Season" sheet; the sheet is omitted if 0
+     * @throws IOException if the file can't be written
+     */
+    public void generate(String file, int movies, int episodes, int seasons) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            generate(os, movies, episodes, seasons);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Write a spreadsheet to a stream
+     * @param os destination of the .xlsx data; it is not closed
+     * @param movies number of rows in the "Movie" sheet; the sheet is omitted if 0
+     * @param episodes number of rows in the "Episode" sheet; the sheet is omitted if 0
+     * @param seasons number of rows in the "Season" sheet; the sheet is omitted if 0
+     * @throws IOException if the spreadsheet can't be written
+     */
+    public void generate(OutputStream os, int movies, int episodes, int seasons) throws IOException {
+        SXSSFWorkbook wb = new SXSSFWorkbook(windowSize);
+        wb.setCompressTempFiles(true);
+        try {
+            if (movies > 0) {
+                Sheet sheet = startSheet(wb, "Movie", AvailXML.movieRows);
+                for (int i=0; i<movies; i++)
+                    writeRow(sheet.createRow(i + 2), movieRow(i));
+            }
+            if (episodes > 0) {
+                Sheet sheet = startSheet(wb, "Episode", AvailXML.episodeRows);
+                for (int i=0; i<episodes; i++)
+                    writeRow(sheet.createRow(i + 2), episodeRow(i));
+            }
+            if (seasons > 0) {
+                Sheet sheet = startSheet(wb, "Season", AvailXML.episodeRows);
+                for (int i=0; i<seasons; i++)
+                    writeRow(sheet.createRow(i + 2), seasonRow(i));
+            }
+            wb.write(os);
+        } finally {
+            wb.dispose(); // delete temporary files
+        }
+    }
+
+    /**
+     * Create the cell values of a Movie avail
+     * @param i the avail's sequence number; titles and IDs are derived from it
+     * @return the row, in Movie column order
+     */
+    String[] movieRow(int i) {
+        String t = pick(TERRITORIES);
+        String[] f = new String[AvailXML.movieRows[1].length];
+        f[0]  = "Studio " + random.nextInt(10);        // DisplayName
+        f[1]  = pick(LANGUAGES);                       // StoreLanguage
+        f[2]  = t;                                     // Territory
+        f[3]  = "Movie";                               // WorkType
+        f[4]  = "Full Extract";                        // EntryType
+        f[5]  = "Title " + i;                          // TitleInternalAlias
+        f[6]  = "Title " + i;                          // TitleDisplayUnlimited
+        f[7]  = pick(LOCALIZATIONS);                   // LocalizationType
+        f[8]  = pick(LICENSES);                        // LicenseType
+        f[9]  = pick(LRDS);                            // LicenseRightsDescription
+        f[10] = pick(PROFILES);                        // FormatProfile
+        f[11] = date(2015);                            // Start
+        f[12] = random.nextBoolean() ? "Open" : date(2017); // End
+        f[13] = "Tier";                                // PriceType
+        f[14] = "Tier " + (1 + random.nextInt(3));     // PriceValue
+        f[19] = "md:cid:org:generated:" + i;           // ContentID
+        f[20] = eidr();                                // ProductID
+        f[22] = "md:availid:org:generated:m" + i;      // AvailID
+        f[27] = Integer.toString(1950 + random.nextInt(66)); // ReleaseYear
+        f[28] = date(2014);                            // ReleaseHistoryOriginal
+        rating(f, t, 31);                              // RatingSystem, RatingValue
+        f[36] = "Yes";                                 // CaptionIncluded
+        f[41] = runLength(80, 70);                     // TotalRunTime
+        return finish(f, MOVIE_DIRTY);
+    }
+
+    /**
+     * Create the cell values of an Episode avail
+     * @param i the avail's sequence number; titles and IDs are derived from it
+     * @return the row, in Episode column order
+     */
+    String[] episodeRow(int i) {
+        String t = pick(TERRITORIES);
+        int series = i / 100, season = (i / 10) % 10 + 1, episode = i % 10 + 1;
+        String[] f = new String[AvailXML.episodeRows[1].length];
+        tvRow(f, t, series, season);
+        f[3]  = "Episode";                             // WorkType
+        f[8]  = Integer.toString(episode);             // EpisodeNumber
+        f[10] = "Episode " + i;                        // EpisodeTitleInternalAlias
+        f[11] = "Episode " + i;                        // EpisodeTitleDisplayUnlimited
+        f[34] = "md:cid:org:generated:e" + i;          // EpisodeContentID
+        f[35] = eidr();                                // EpisodeProductID
+        f[37] = "md:availid:org:generated:e" + i;      // AvailID
+        f[41] = date(2014);                            // ReleaseHistoryOriginal
+        f[55] = runLength(20, 40);                     // TotalRunTime
+        return finish(f, EPISODE_DIRTY);
+    }
+
+    /**
+     * Create the cell values of a Season avail
+     * @param i the avail's sequence number; titles and IDs are derived from it
+     * @return the row, in Season (i.e. Episode) column order
+     */
+    String[] seasonRow(int i) {
+        String t = pick(TERRITORIES);
+        String[] f = new String[AvailXML.episodeRows[1].length];
+        tvRow(f, t, i / 10, i % 10 + 1);
+        f[3]  = "Season";                              // WorkType
+        f[37] = "md:availid:org:generated:s" + i;      // AvailID
+        return finish(f, SEASON_DIRTY);
+    }
+
+    /**
+     * Fill in the columns Episode and Season rows have in common
+     */
+    private void tvRow(String[] f, String t, int series, int season) {
+        f[0]  = "Studio " + random.nextInt(10);        // DisplayName
+        f[1]  = pick(LANGUAGES);                       // StoreLanguage
+        f[2]  = t;                                     // Territory
+        f[4]  = "Full Extract";                        // EntryType
+        f[5]  = "Series " + series;                    // SeriesTitleInternalAlias
+        f[6]  = "Series " + series;                    // SeriesTitleDisplayUnlimited
+        f[7]  = Integer.toString(season);              // SeasonNumber
+        f[9]  = pick(LOCALIZATIONS);                   // LocalizationType
+        f[12] = "Series " + series + " Season " + season; // SeasonTitleInternalAlias
+        f[13] = f[12];                                 // SeasonTitleDisplayUnlimited
+        f[14] = "10";                                  // EpisodeCount
+        f[15] = "10";                                  // SeasonCount
+        f[20] = pick(LICENSES);                        // LicenseType
+        f[21] = pick(LRDS);                            // LicenseRightsDescription
+        f[22] = pick(PROFILES);                        // FormatProfile
+        f[23] = date(2015);                            // Start
+        f[24] = random.nextBoolean() ? "Open" : date(2017); // End
+        f[26] = "Tier";                                // PriceType
+        f[27] = "Tier " + (1 + random.nextInt(3));     // PriceValue
+        f[32] = "md:cid:org:generated:series" + series; // SeriesContentID
+        f[33] = "md:cid:org:generated:series" + series + "-" + season; // SeasonContentID
+        f[40] = Integer.toString(1990 + series % 26);  // ReleaseYear
+        f[50] = "Yes";                                 // CaptionIncluded
+        rating(f, t, 44);                              // RatingSystem, RatingValue
+    }
+
+    /**
+     * Blank the unset cells and, at the configured rate, corrupt one
+     */
+    private String[] finish(String[] f, int[] dirtyCols) {
+        for (int j=0; j<f.length; j++)
+            if (f[j] == null)
+                f[j] = "";
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            int k;
+            do {
+                k = random.nextInt(DIRTY.length);
+            } while (dirtyCols[k] < 0);
+            f[dirtyCols[k]] = DIRTY[k];
+            dirtyRows++;
+        }
+        return f;
+    }
+
+    private void rating(String[] f, String territory, int col) {
+        if (territory.equals("US")) {
+            f[col] = "MPAA";
+            f[col + 1] = pick(new String[] { "G", "PG", "PG-13", "R" });
+        }
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private String date(int year) {
+        return String.format("%d-%02d-%02d", year, 1 + random.nextInt(12), 1 + random.nextInt(28));
+    }
+
+    private String runLength(int min, int range) {
+        int m = min + random.nextInt(range);
+        return String.format("%02d:%02d:00", m / 60, m % 60);
+    }
+
+    private String eidr() {
+        StringBuilder sb = new StringBuilder("10.5240/");
+        for (int i=0; i<5; i++)
+            sb.append(String.format("%04X-", random.nextInt(0x10000)));
+        sb.append(Character.toUpperCase(Character.forDigit(random.nextInt(16), 16)));
+        return sb.toString();
+    }
+
+    private static Sheet startSheet(SXSSFWorkbook wb, String name, String[][] header) {
+        Sheet sheet = wb.createSheet(name);
+        for (int r=0; r<header.length; r++)
+            writeRow(sheet.createRow(r), header[r]);
+        return sheet;
+    }
+
+    /**
+     * Write a row; whole numbers are stored as numeric cells, as they
+     * would be in a sheet typed in by hand
+     */
+    private static void writeRow(Row row, String[] values) {
+        for (int j=0; j<values.length; j++) {
+            String v = values[j];
+            Cell cell = row.createCell(j); // even if blank, so every row is full width
+            if (isCount(v))
+                cell.setCellValue(Integer.parseInt(v));
+            else
+                cell.setCellValue(v);
+        }
+    }
+
+    private static boolean isCount(String v) {
+        if (v.length() == 0 || v.length() > 4 || v.charAt(0) == '0')
+            return false;
+        for (int i=0; i<v.length(); i++)
+            if (!Character.isDigit(v.charAt(i)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Command-line entry point:
+     * AvailsGenerator file movies episodes seasons [errorRate [seed]]
+     * @param args the command-line arguments
+     * @throws Exception if the arguments are invalid or the file can't be written
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4 || args.length > 6) {
+            System.err.println("usage: AvailsGenerator file movies episodes seasons [errorRate [seed]]");
+            System.exit(1);
+        }
+        AvailsGenerator gen = new AvailsGenerator(args.length > 5 ? Long.parseLong(args[5]) : 0);
+        if (args.length > 4)
+            gen.setErrorRate(Double.parseDouble(args[4]));
+        gen.generate(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                     Integer.parseInt(args[3]));
+        System.out.println(args[0] + ": " + gen.getDirtyRows() + " dirty rows");
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Opens the files read and written by the conversion APIs, handling
+ * gzip compression transparently.  Output is compressed if the file
+ * name ends in ".gz" (or if asked explicitly); compression runs on a
+ * background thread, so that it overlaps with the generation of the
+ * data being compressed.  Input is decompressed if it starts with the
+ * gzip magic number, whatever the file is called.
+ */
+public final class AvailsIO {
+    public static final String GZIP_SUFFIX = ".gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private AvailsIO() {
+    }
+
+    /**
+     * Determine whether a file is compressed, judging by its name
+     * @param file the file name
+     * @return true iff the name ends in ".gz" (ignoring case)
+     */
+    public static boolean isCompressed(String file) {
+        return file.regionMatches(true, file.length() - GZIP_SUFFIX.length(),
+                                  GZIP_SUFFIX, 0, GZIP_SUFFIX.length());
+    }
+
+    /**
+     * Create a file for writing, compressing it if its name ends in ".gz"
+     * @param file the file name
+     * @return a buffered stream; the caller must close it
+     * @throws IOException if the file can't be created
+     */
+    public static OutputStream openOutput(String file) throws IOException {
+        return openOutput(file, isCompressed(file));
+    }
+
+    /**
+     * Create a file for writing
+     * @param file the file name
+     * @param compress if true, the file is written in gzip format
+     * @return a buffered stream; the caller must close it, which, if
+     *         the file is compressed, waits for compression to finish
+     * @throws IOException if the file can't be created
+     */
+    public static OutputStream openOutput(String file, boolean compress) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        if (!compress)
+            return new BufferedOutputStream(fos, BUFFER_SIZE);
+        return new BackgroundGzipOutputStream(fos, file);
+    }
+
+    /**
+     * Open a file for reading, decompressing it if it is in gzip format
+     * @param file the file name
+     * @return a buffered stream; the caller must close it
+     * @throws IOException if the file can't be opened
+     */
+    public static InputStream openInput(String file) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            bis.mark(2);
+            int b0 = bis.read();
+            int b1 = bis.read();
+            bis.reset();
+            if (b0 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b1 == (GZIPInputStream.GZIP_MAGIC >> 8))
+                return new GZIPInputStream(bis, BUFFER_SIZE);
+            return bis;
+        } catch (IOException e) {
+            bis.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Buffers what is written and hands each full buffer to a thread
+     * which compresses it to the underlying file.  An error on that
+     * thread is reported by the next write(), flush() or close().
+     */
+    private static class BackgroundGzipOutputStream extends OutputStream {
+        private static final int QUEUED = 4; // full buffers waiting to be compressed
+        private static final Chunk END = new Chunk();
+
+        private static class Chunk {
+            final byte[] data = new byte[BUFFER_SIZE];
+            int len;
+        }
+
+        private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(QUEUED);
+        private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<Chunk>(QUEUED + 2);
+        private final Thread worker;
+        private volatile IOException error;
+        private Chunk chunk = new Chunk();
+        private boolean closed;
+
+        BackgroundGzipOutputStream(OutputStream out, String name) throws IOException {
+            final GZIPOutputStream gz;
+            try {
+                gz = new GZIPOutputStream(out, BUFFER_SIZE);
+            } catch (IOException e) {
+                out.close();
+                throw e;
+            }
+            worker = new Thread(new Runnable() {
+                    public void run() {
+                        compress(gz);
+                    }
+                }, "gzip " + name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        /**
+         * Body of the worker thread
+         */
+        private void compress(GZIPOutputStream gz) {
+            try {
+                Chunk c;
+                while ((c = queue.take()) != END) {
+                    if (error == null) {
+                        try {
+                            gz.write(c.data, 0, c.len);
+                        } catch (IOException e) {
+                            error = e; // keep draining so the writer never blocks
+                        }
+                    }
+                    free.offer(c);
+                }
+            } catch (InterruptedException e) {
+                error = new InterruptedIOException("compression interrupted");
+            } finally {
+                try {
+                    gz.close();
+                } catch (IOException e) {
+                    if (error == null)
+                        error = e;
+                }
+            }
+        }
+
+        public void write(int b) throws IOException {
+            if (chunk.len == BUFFER_SIZE)
+                send();
+            chunk.data[chunk.len++] = (byte) b;
+        }
+
+        public void write(byte[] b, int off, int n) throws IOException {
+            while (n > 0) {
+                if (chunk.len == BUFFER_SIZE)
+                    send();
+                int k = Math.min(n, BUFFER_SIZE - chunk.len);
+                System.arraycopy(b, off, chunk.data, chunk.len, k);
+                chunk.len += k;
+                off += k;
+                n -= k;
+            }
+        }
+
+        /**
+         * Pass what has been written so far to the worker; it is not
+         * forced to disk
+         */
+        public void flush() throws IOException {
+            if (chunk.len > 0)
+                send();
+            check();
+        }
+
+        /**
+         * Compress what remains and wait for the file to be closed.
+         * The worker is always shut down, even if the calling thread
+         * is interrupted; the interrupt is passed on once the file
+         * has been closed.
+         */
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            boolean interrupted = false;
+            if (chunk.len > 0 && error == null)
+                interrupted |= putUninterruptibly(chunk);
+            interrupted |= putUninterruptibly(END);
+            while (true) {
+                try {
+                    worker.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            check();
+        }
+
+        private void send() throws IOException {
+            check();
+            put(chunk);
+            chunk = free.poll();
+            if (chunk == null)
+                chunk = new Chunk();
+            chunk.len = 0;
+        }
+
+        private void put(Chunk c) throws IOException {
+            try {
+                queue.put(c);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("interrupted waiting for compression");
+            }
+        }
+
+        /**
+         * Queue a chunk, waiting for room however often the thread is
+         * interrupted; the worker always drains the queue, so this
+         * can't block forever
+         * @return true iff the thread was interrupted while waiting
+         */
+        private boolean putUninterruptibly(Chunk c) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(c);
+                    return interrupted;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        private void check() throws IOException {
+            IOException e = error;
+            if (e != null)
+                throw new IOException("compression failed: " + e.getMessage(), e);
+        }
+    }
+}
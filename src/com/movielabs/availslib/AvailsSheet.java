@@ -27,6 +27,8 @@ package com.movielabs.availslib;
 import java.util.*;
 import java.io.*;
 import java.text.ParseException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -36,7 +38,6 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.*;
 
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.w3c.dom.*;
 
@@ -44,7 +45,26 @@ import org.w3c.dom.*;
  * Represents an individual sheet of an Excel spreadsheet
  */
 public class AvailsSheet {
+    static final String AVAILS_NS = "http://www.movielabs.com/schema/avails/v2.0/avails";
+    static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+    static final String MD_NS = "http://www.movielabs.com/schema/md/v2.3/md";
+    static final String MDMEC_NS = "http://www.movielabs.com/schema/mdmec/v2.3";
+    static final String SCHEMA_LOCATION = AVAILS_NS + " " +
+        "http://www.movielabs.com/schema/avails/v2.0/avails-v2.0.xsd";
+
+    private static final int VALIDATE_CHUNK = 256; // rows per fork-join leaf
+    private static final int XML_CHUNK = 512; // rows per parallel XML task
+
     private ArrayList<SheetRow> rows;
+    private ColumnStore columns; // used instead of rows in columnar mode
+    private LoadStatistics loadStatistics;
+
+    // column layout, taken from the header row if one is found
+    private String[] header;
+    private boolean headerSearch = true; // until the header or the first avail is seen
+    private int territoryCol = COL.Territory.ordinal();
+    private int workTypeCol = COL.WorkType.ordinal();
+    private HashMap<String, int[]> columnMaps = new HashMap<String, int[]>();
     private AvailSS parent;
     private String name;
 
@@ -85,6 +105,8 @@ public class AvailsSheet {
         this.parent = parent;
         this.name = name;
         rows = new ArrayList<SheetRow>();
+        if (parent.getColumnarStorage())
+            columns = new ColumnStore();
     }
 
     /**
@@ -96,7 +118,12 @@ public class AvailsSheet {
     public AvailsSheet(AvailSS parent, String name, int initialRows) {
         this.parent = parent;
         this.name = name;
-        rows = new ArrayList<SheetRow>(initialRows);
+        if (parent.getColumnarStorage()) {
+            rows = new ArrayList<SheetRow>();
+            columns = new ColumnStore();
+        } else {
+            rows = new ArrayList<SheetRow>(initialRows);
+        }
     }
 
     /**
@@ -105,10 +132,108 @@ public class AvailsSheet {
      * @return true iff the row is an avail based on the contents of the Territory column
      */
     public boolean isAvail(String[] fields) {
-        String t = fields[COL.Territory.ordinal()];
-        boolean ret = (t != null) && 
+        String t = (territoryCol < fields.length) ? fields[territoryCol] : null;
+        return (t != null) && 
             !(t.equals("AvailTrans") || t.equals("Territory") || 
               (t.length() >= 2 && t.substring(0, 2).equals("//")));
+    }
+
+    /**
+     * Look for the header row (the one naming the columns) among the
+     * rows before the first avail; once it is found, columns are
+     * located by name rather than by position.  Loaders call this on
+     * each row before isAvail(), and skip the row if it returns true.
+     * @param fields an array containing the raw values of a spreadsheet row
+     * @return true iff the row is the header row or the row of column
+     *         categories that precedes it
+     */
+    boolean scanHeader(String[] fields) {
+        if (!headerSearch)
+            return false;
+        if (isHeader(fields))
+            return true;
+        if (isAvail(fields)) // too late for a header
+            headerSearch = false;
+        return false;
+    }
+
+    /**
+     * Check for the header row, or the row of column categories that
+     * precedes it, and record the column layout if it is the header
+     * @param fields an array containing the raw values of a spreadsheet row
+     * @return true if the row is either kind of header
+     */
+    private boolean isHeader(String[] fields) {
+        int territory = -1, workType = -1;
+        boolean displayName = false;
+        for (int i=0; i<fields.length; i++) {
+            String f = fields[i];
+            if (f == null)
+                continue;
+            f = f.trim();
+            if (f.equalsIgnoreCase("AvailTrans"))
+                return true; // categories
+            else if (f.equalsIgnoreCase("Territory") && territory < 0)
+                territory = i;
+            else if (f.equalsIgnoreCase("WorkType") && workType < 0)
+                workType = i;
+            else if (f.equalsIgnoreCase("DisplayName"))
+                displayName = true;
+        }
+        if (territory < 0 || workType < 0 || !displayName)
+            return false;
+        header = fields.clone();
+        territoryCol = territory;
+        workTypeCol = workType;
+        columnMaps.clear();
+        headerSearch = false;
+        return true;
+    }
+
+    /**
+     * @return true iff the header row has been found, so that columns
+     *         are located by name
+     */
+    boolean hasHeader() {
+        return header != null;
+    }
+
+    /**
+     * Rearrange a row into the column order its row class expects; the
+     * mapping is worked out once per workType
+     * @param workType the row's workType
+     * @param fields an array containing the raw values of a spreadsheet row
+     * @return fields, or a rearranged copy if the sheet's layout is non-standard
+     */
+    private String[] canonical(String workType, String[] fields) {
+        if (header == null)
+            return fields;
+        int[] map;
+        if (columnMaps.containsKey(workType)) {
+            map = columnMaps.get(workType);
+        } else {
+            ArrayList<String> missing = new ArrayList<String>();
+            switch(workType) {
+            case "Movie":
+                map = Movie.columnMap(header, missing);
+                break;
+            case "Episode":
+                map = Episode.columnMap(header, missing);
+                break;
+            default:
+                map = Season.columnMap(header, missing);
+                break;
+            }
+            if (!missing.isEmpty())
+                parent.getLogger().warn(String.format("Sheet %s: %s column(s) not in header: %s",
+                                                      name, workType, missing));
+            columnMaps.put(workType, map);
+        }
+        if (map == null)
+            return fields;
+        String[] ret = new String[map.length];
+        for (int i=0; i<map.length; i++)
+            ret[i] = (map[i] >= 0 && map[i] < fields.length) ? fields[map[i]] : "";
         return ret;
     }
 
@@ -117,24 +242,75 @@ public class AvailsSheet {
     }
 
     /**
-     * Get a an array of objects representing each row of this sheet
+     * Get statistics describing how this sheet was loaded
+     * @return the statistics, or null if the sheet was not loaded from a spreadsheet
+     */
+    public LoadStatistics getLoadStatistics() {
+        return loadStatistics;
+    }
+
+    /**
+     * Record how this sheet was loaded; called once loading is complete
+     */
+    void setLoadStatistics(LoadStatistics loadStatistics) {
+        this.loadStatistics = loadStatistics;
+        if (columns != null)
+            columns.seal();
+    }
+
+    /**
+     * Get a an array of objects representing each row of this sheet.
+     * In columnar mode the rows are created afresh on each call, so
+     * changes to the returned list are not reflected in the sheet.
      * @return an array containing all the SheetRow objects in this sheet
      */
     public ArrayList<SheetRow> getRows() {
-        return rows;
+        if (columns == null)
+            return rows;
+        ArrayList<SheetRow> ret = new ArrayList<SheetRow>(columns.size());
+        for (int i=0; i<columns.size(); i++)
+            ret.add(getRow(i));
+        return ret;
+    }
+
+    /**
+     * @return the number of avails in this sheet
+     */
+    public int getRowCount() {
+        return (columns == null) ? rows.size() : columns.size();
+    }
+
+    /**
+     * Get one row of this sheet.  In columnar mode a new SheetRow is
+     * built from the column data on each call, and may be discarded
+     * once it has been used.
+     * @param i index of the row (0-based, counting avails only)
+     * @return the row
+     */
+    public SheetRow getRow(int i) {
+        if (columns == null)
+            return rows.get(i);
+        return newRow(columns.getWorkType(i), columns.getRowNum(i), columns.getFields(i));
     }
 
     /**
-     * helper routine to create a log entry
-     * @param s the data to be logged
-     * @param bail if true, throw a ParseException after logging the message
+     * helper routine to report a problem; it is passed to the
+     * spreadsheet's DiagnosticsSink if there is one, and logged otherwise
+     * @param code the kind of problem
+     * @param raw the offending value
+     * @param bail if true, throw a ParseException after reporting the problem
      * @throws ParseException if bail is true
      */
-    private void log(String s, int rowNum, boolean bail) throws Exception {
-        s = String.format("Sheet %s Row %5d: %s", name, rowNum, s);
-        parent.getLogger().warn(s);
+    private void log(ErrorCode code, String raw, int rowNum, boolean bail) throws Exception {
+        DiagnosticsSink sink = parent.getDiagnosticsSink();
+        if (sink != null)
+            sink.report(name, rowNum, "WorkType", code, raw);
+        else
+            parent.getLogger().warn(String.format("Sheet %s Row %5d: %s", name, rowNum,
+                                                  code.format("WorkType", raw)));
         if (bail)
-            throw new ParseException(s, 0);
+            throw new ParseException(String.format("Sheet %s Row %5d: %s", name, rowNum,
+                                                   code.format("WorkType", raw)), 0);
     }
 
     /**
@@ -145,25 +321,66 @@ public class AvailsSheet {
      *         (currently, only 'movie', 'episode', or 'season' are accepted)
      */
     public void addRow(String[] fields, int rowNum) throws Exception {
+        if (columns != null) {
+            String workType = checkWorkType(fields, rowNum);
+            if (workType != null)
+                columns.add(canonical(workType, fields), rowNum, workType);
+            return;
+        }
+        SheetRow sr = makeRow(fields, rowNum);
+        if (sr != null)
+            rows.add(sr);
+    }
+
+    /**
+     * Create the object representing a row of spreadsheet data, without
+     * adding it to this sheet
+     * @param fields an array containing the raw values of a spreadsheet row 
+     * @param rowNum the row number from the source spreadsheet
+     * @return the row, or null if its workType is invalid (the error is logged)
+     * @throws Exception if an invalid workType is encountered and can't be skipped
+     */
+    SheetRow makeRow(String[] fields, int rowNum) throws Exception {
+        String workType = checkWorkType(fields, rowNum);
+        if (workType == null)
+            return null;
+        return newRow(workType, rowNum, canonical(workType, fields));
+    }
 
-        String workType = fields[COL.WorkType.ordinal()];
+    /**
+     * Determine the workType of a row, correcting it if cleanup is enabled
+     * @param fields an array containing the raw values of a spreadsheet row 
+     * @param rowNum the row number from the source spreadsheet
+     * @return the workType, or null if it is invalid (the error is logged)
+     * @throws ParseException if the corrected workType is still invalid
+     */
+    private String checkWorkType(String[] fields, int rowNum) throws Exception {
+        String workType = (workTypeCol < fields.length) ? fields[workTypeCol] : "";
 
         if (!(workType.equals("Movie") || workType.equals("Episode") || workType.equals("Season"))) {
             if (parent.getCleanupData()) {
-                Pattern pat = Pattern.compile("^\\s*(movie|episode|season)\\s*$", Pattern.CASE_INSENSITIVE);
-                Matcher m = pat.matcher(workType);
+                Matcher m = PatternRegistry.WORK_TYPE.matcher(workType);
                 if (m.matches()) {
-                    log("corrected from '" + workType + "'", rowNum, false);
+                    log(ErrorCode.WORKTYPE_CORRECTED, workType, rowNum, false);
                     workType = m.group(1).substring(0, 1).toUpperCase() + m.group(1).substring(1).toLowerCase();
                 } else {
-                    log("invalid workType: '" + workType + "'", rowNum, false);
-                    return;
+                    log(ErrorCode.INVALID_WORKTYPE, workType, rowNum, false);
+                    return null;
                 }
             } else {
-                log("invalid workType: '" + workType + "'", rowNum, false);
-                return;
+                log(ErrorCode.INVALID_WORKTYPE, workType, rowNum, false);
+                return null;
             }
+            if (!(workType.equals("Movie") || workType.equals("Episode") || workType.equals("Season")))
+                log(ErrorCode.INVALID_WORKTYPE, workType, rowNum, true);
         }
+        return workType;
+    }
+
+    /**
+     * Create the object for a row whose workType has been checked
+     */
+    private SheetRow newRow(String workType, int rowNum, String[] fields) {
         SheetRow sr;
         switch(workType) {
         case "Movie": 
@@ -176,10 +393,9 @@ public class AvailsSheet {
             sr = new Season(this, "Season", rowNum, fields);
             break;
         default:
-            log("invalid workType: " + workType, rowNum, true);
-            return;
+            throw new IllegalArgumentException("invalid workType: " + workType);
         }
-        rows.add(sr);
+        return sr;
     }
 
     /**
@@ -190,6 +406,102 @@ public class AvailsSheet {
         return parent;
     }
 
+    /**
+     * Apply every validation rule to the avails in this sheet without
+     * generating any XML.  Problems are collected in the returned
+     * report rather than being logged.
+     * @param shortDesc the short description that would appear in the
+     *        generated document (it is a required element)
+     * @return a report listing each problem found
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    public ValidationReport validate(String shortDesc) throws Exception {
+        ValidationReport report = new ValidationReport(name);
+        int n = getRowCount();
+        for (int i=0; i<n; i++) {
+            SheetRow r = getRow(i);
+            if (shortDesc != null && !shortDesc.equals(""))
+                r.setShortDesc(shortDesc);
+            r.validate(report);
+        }
+        report.setRowCount(n);
+        return report;
+    }
+
+    /**
+     * Validate every avail in this sheet in parallel, collecting all
+     * problems rather than stopping at the first one.  The
+     * exit-on-error policy is ignored, and an unexpected failure in a
+     * row is recorded as a problem with that row, so this method
+     * always returns a complete report.
+     * @param pool the fork-join pool that does the work; its
+     *        parallelism bounds the number of rows checked at once
+     * @param shortDesc the short description that would appear in the
+     *        generated document (it is a required element)
+     * @param maxErrors the number of problems to keep (the earliest in
+     *        the sheet); the rest are only counted
+     * @return a report listing the problems kept, in row order
+     */
+    public ValidationReport validateAll(ForkJoinPool pool, String shortDesc, int maxErrors) {
+        ValidationReport report = pool.invoke(new ValidateTask(0, getRowCount(), shortDesc, maxErrors));
+        report.setRowCount(getRowCount());
+        return report;
+    }
+
+    /**
+     * Validate every avail in this sheet in parallel on the common
+     * fork-join pool, collecting all problems
+     * @param shortDesc the short description that would appear in the
+     *        generated document (it is a required element)
+     * @return a report listing every problem, in row order
+     */
+    public ValidationReport validateAll(String shortDesc) {
+        return validateAll(ForkJoinPool.commonPool(), shortDesc, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Validates a range of rows, splitting it until it is small enough
+     * to check directly; each leaf has its own report, and reports are
+     * merged left to right so problems stay in row order
+     */
+    private class ValidateTask extends RecursiveTask<ValidationReport> {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi;
+        private final String shortDesc;
+        private final int maxErrors;
+
+        ValidateTask(int lo, int hi, String shortDesc, int maxErrors) {
+            this.lo = lo;
+            this.hi = hi;
+            this.shortDesc = shortDesc;
+            this.maxErrors = maxErrors;
+        }
+
+        protected ValidationReport compute() {
+            if (hi - lo > VALIDATE_CHUNK) {
+                int mid = (lo + hi) >>> 1;
+                ValidateTask left = new ValidateTask(lo, mid, shortDesc, maxErrors);
+                ValidateTask right = new ValidateTask(mid, hi, shortDesc, maxErrors);
+                right.fork();
+                ValidationReport report = left.compute();
+                report.addAll(right.join());
+                return report;
+            }
+            ValidationReport report = new ValidationReport(name, maxErrors);
+            for (int i=lo; i<hi; i++) {
+                SheetRow r = getRow(i);
+                try {
+                    if (shortDesc != null && !shortDesc.equals(""))
+                        r.setShortDesc(shortDesc);
+                    r.validate(report, true);
+                } catch (Exception e) {
+                    report.report(name, r.rowNum, null, ErrorCode.OTHER, e.toString());
+                }
+            }
+            return report;
+        }
+    } /* ValidateTask */
+
     /**
      * Create an Avails XML document based on the data in this spreadsheet
      * @param shortDesc a short description that will appear in the document
@@ -211,30 +523,30 @@ public class AvailsSheet {
             root = dom.createElement("AvailList");
             // Make it the root element of this new document
             Attr xmlns = dom.createAttribute("xmlns");
-            xmlns.setValue("http://www.movielabs.com/schema/avails/v2.0/avails");
+            xmlns.setValue(AVAILS_NS);
             root.setAttributeNode(xmlns);
 
             xmlns = dom.createAttribute("xmlns:xsi");
-            xmlns.setValue("http://www.w3.org/2001/XMLSchema-instance");
+            xmlns.setValue(XSI_NS);
             root.setAttributeNode(xmlns);
 
             xmlns = dom.createAttribute("xmlns:md");
-            xmlns.setValue("http://www.movielabs.com/schema/md/v2.3/md");
+            xmlns.setValue(MD_NS);
             root.setAttributeNode(xmlns);
 
             xmlns = dom.createAttribute("xmlns:mdmec");
-            xmlns.setValue("http://www.movielabs.com/schema/mdmec/v2.3");
+            xmlns.setValue(MDMEC_NS);
             root.setAttributeNode(xmlns);
 
             xmlns = dom.createAttribute("xsi:schemaLocation");
-            xmlns.setValue("http://www.movielabs.com/schema/avails/v2.0/avails " + 
-                           "http://www.movielabs.com/schema/avails/v2.0/avails-v2.0.xsd");
+            xmlns.setValue(SCHEMA_LOCATION);
             root.setAttributeNode(xmlns);
 
             dom.appendChild(root);
 
             //int lineNo = 0;
-            for (SheetRow r : rows) {
+            for (int i=0; i<getRowCount(); i++) {
+                SheetRow r = getRow(i);
                 //lineNo++;
                 if (shortDesc != null & !shortDesc.equals(""))
                     r.setShortDesc(shortDesc);
@@ -252,11 +564,13 @@ public class AvailsSheet {
 
     /**
      * Create an Avails XML file based on the data in this spreadsheet
-     * @param xmlFile the name of the created XML output file
+     * @param xmlFile the name of the created XML output file; it is
+     *        gzip-compressed if the name ends in ".gz"
      * @param shortDesc a short description that will appear in the document
      * @throws Exception if any errors are encountered
      */
     public void makeXMLFile(String xmlFile, String shortDesc) throws Exception {
+        OutputStream os = null;
         try {
             Document dom = makeXML(shortDesc);
             
@@ -268,7 +582,8 @@ public class AvailsSheet {
             
             DOMSource source = new DOMSource(dom);
             //StreamResult result = new StreamResult(System.out);
-            StreamResult result = new StreamResult(new FileOutputStream(xmlFile));
+            os = AvailsIO.openOutput(xmlFile);
+            StreamResult result = new StreamResult(os);
             transformer.transform(source, result);
 
         } catch (TransformerConfigurationException e) {
@@ -280,6 +595,181 @@ public class AvailsSheet {
         } catch (FileNotFoundException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
+        } finally {
+            if (os != null)
+                os.close();
+        }
+    }
+
+    /**
+     * Write an Avails XML document based on the data in this
+     * spreadsheet.  Unlike makeXML(), each avail is written out as
+     * soon as it is generated, so the document is never held in memory.
+     * @param os the output stream; it is flushed but not closed
+     * @param shortDesc a short description that will appear in the document
+     * @param indent if true, the output is pretty-printed
+     * @throws Exception if any errors are encountered
+     */
+    public void makeXMLStream(OutputStream os, String shortDesc, boolean indent) throws Exception {
+        writeXML(new AvailXMLWriter(os, indent), shortDesc);
+    }
+
+    /**
+     * Write an Avails XML file based on the data in this spreadsheet,
+     * streaming each avail to the file as it is generated
+     * @param xmlFile the name of the created XML output file; it is
+     *        gzip-compressed if the name ends in ".gz"
+     * @param shortDesc a short description that will appear in the document
+     * @param indent if true, the output is pretty-printed
+     * @throws Exception if any errors are encountered
+     */
+    public void makeXMLStream(String xmlFile, String shortDesc, boolean indent) throws Exception {
+        writeXMLFile(xmlFile, shortDesc, indent, null);
+    }
+
+    /**
+     * Write an Avails XML document based on the data in this
+     * spreadsheet, generating the avails in parallel.  Rows are split
+     * into chunks, each of which is converted on the pool by its own
+     * scratch document and writer; the chunks are written out in row
+     * order as they complete, so the output is the same as that of
+     * makeXMLStream().  Only a few chunks per worker are in progress
+     * at any time, so the document is never held in memory.
+     * @param os the output stream; it is flushed but not closed
+     * @param shortDesc a short description that will appear in the document
+     * @param indent if true, the output is pretty-printed
+     * @param pool the pool the avails are generated on
+     * @throws Exception if any errors are encountered; the first error
+     *         in row order is thrown, as it would be by makeXMLStream()
+     */
+    public void makeXMLParallel(OutputStream os, String shortDesc, boolean indent,
+                                ForkJoinPool pool) throws Exception {
+        writeXMLParallel(new AvailXMLWriter(os, indent), shortDesc, indent, pool);
+    }
+
+    /**
+     * Write an Avails XML file based on the data in this spreadsheet,
+     * generating the avails in parallel on the common fork-join pool
+     * @param xmlFile the name of the created XML output file; it is
+     *        gzip-compressed if the name ends in ".gz"
+     * @param shortDesc a short description that will appear in the document
+     * @param indent if true, the output is pretty-printed
+     * @throws Exception if any errors are encountered
+     */
+    public void makeXMLParallel(String xmlFile, String shortDesc, boolean indent) throws Exception {
+        writeXMLFile(xmlFile, shortDesc, indent, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Write a file through makeXMLStream() or, if pool is not null,
+     * makeXMLParallel().  Uncompressed files are written through
+     * their FileChannel; compressed ones through AvailsIO, which
+     * compresses on a separate thread.
+     */
+    private void writeXMLFile(String xmlFile, String shortDesc, boolean indent,
+                              ForkJoinPool pool) throws Exception {
+        Closeable out;
+        AvailXMLWriter writer;
+        if (AvailsIO.isCompressed(xmlFile)) {
+            OutputStream os = AvailsIO.openOutput(xmlFile);
+            out = os;
+            writer = new AvailXMLWriter(os, indent);
+        } else {
+            FileOutputStream fos = new FileOutputStream(xmlFile);
+            out = fos;
+            writer = new AvailXMLWriter(fos.getChannel(), indent);
+        }
+        try {
+            if (pool == null)
+                writeXML(writer, shortDesc);
+            else
+                writeXMLParallel(writer, shortDesc, indent, pool);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeXMLParallel(AvailXMLWriter writer, String shortDesc, boolean indent,
+                                  ForkJoinPool pool) throws Exception {
+        int n = getRowCount();
+        int window = 2 * pool.getParallelism();
+        ArrayDeque<XMLChunk> pending = new ArrayDeque<XMLChunk>();
+        int next = 0;
+
+        writer.writeHeader();
+        try {
+            while (next < n || !pending.isEmpty()) {
+                while (next < n && pending.size() < window) {
+                    int hi = Math.min(n, next + XML_CHUNK);
+                    XMLChunk chunk = new XMLChunk(next, hi, shortDesc, indent);
+                    pool.execute(chunk);
+                    pending.add(chunk);
+                    next = hi;
+                }
+                XMLChunk chunk = pending.remove();
+                byte[] avails = chunk.join();
+                if (chunk.error != null)
+                    throw chunk.error;
+                writer.writeFragment(avails);
+            }
+        } finally {
+            for (XMLChunk t : pending) // only if abandoned
+                t.cancel(false);
+        }
+        writer.close();
+    }
+
+    /**
+     * Converts a range of rows to serialized avails, using its own
+     * scratch document so it can run alongside other chunks.  An
+     * error is kept, rather than thrown, so that the caller sees the
+     * original exception.
+     */
+    private class XMLChunk extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi;
+        private final String shortDesc;
+        private final boolean indent;
+        private Exception error;
+
+        XMLChunk(int lo, int hi, String shortDesc, boolean indent) {
+            this.lo = lo;
+            this.hi = hi;
+            this.shortDesc = shortDesc;
+            this.indent = indent;
+        }
+
+        protected byte[] compute() {
+            try {
+                Document dom = AvailXMLWriter.newDocument();
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(1024 * (hi - lo));
+                AvailXMLWriter writer = new AvailXMLWriter(bos, indent);
+                for (int i=lo; i<hi; i++) {
+                    SheetRow r = getRow(i);
+                    if (shortDesc != null && !shortDesc.equals(""))
+                        r.setShortDesc(shortDesc);
+                    writer.writeAvail(r.makeAvail(dom));
+                }
+                writer.finish();
+                return bos.toByteArray();
+            } catch (Exception e) {
+                error = e;
+                return null;
+            }
+        }
+    } /* XMLChunk */
+
+    private void writeXML(AvailXMLWriter writer, String shortDesc) throws Exception {
+        // scratch document: avails are created on it but never attached
+        Document dom = AvailXMLWriter.newDocument();
+
+        writer.writeHeader();
+        for (int i=0; i<getRowCount(); i++) {
+            SheetRow r = getRow(i);
+            if (shortDesc != null && !shortDesc.equals(""))
+                r.setShortDesc(shortDesc);
+            writer.writeAvail(r.makeAvail(dom));
         }
+        writer.close();
     }
 }
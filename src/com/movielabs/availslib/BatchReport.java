@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.util.*;
+
+/**
+ * The result of a batch conversion: a FileReport for each workbook,
+ * in the order the workbooks were given, and totals over all of them
+ */
+public class BatchReport {
+    private final List<FileReport> files;
+    private final long elapsedMillis;
+
+    BatchReport(List<FileReport> files, long elapsedMillis) {
+        this.files = Collections.unmodifiableList(files);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return a report for each workbook, in the order given
+     */
+    public List<FileReport> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the wall-clock time taken by the whole batch, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @param status how a conversion ended
+     * @return the number of workbooks whose conversion ended that way
+     */
+    public int getCount(FileReport.Status status) {
+        int n = 0;
+        for (FileReport f : files)
+            if (f.getStatus() == status)
+                n++;
+        return n;
+    }
+
+    /**
+     * @return the number of avails written, over all workbooks
+     */
+    public long getAvailCount() {
+        long n = 0;
+        for (FileReport f : files)
+            n += f.getAvailCount();
+        return n;
+    }
+
+    /**
+     * @return the number of problems reported, over all workbooks
+     */
+    public long getErrorCount() {
+        long n = 0;
+        for (FileReport f : files)
+            n += f.getTotal();
+        return n;
+    }
+
+    /**
+     * @return the number of problems reported of each kind that
+     *         occurred, over all workbooks
+     */
+    public Map<ErrorCode, Integer> getErrorCounts() {
+        EnumMap<ErrorCode, Integer> ret = new EnumMap<ErrorCode, Integer>(ErrorCode.class);
+        for (FileReport f : files) {
+            for (Map.Entry<ErrorCode, Integer> e : f.getCounts().entrySet()) {
+                Integer n = ret.get(e.getKey());
+                ret.put(e.getKey(), (n == null) ? e.getValue() : n + e.getValue());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return true iff every workbook was converted
+     */
+    public boolean isSuccessful() {
+        return getCount(FileReport.Status.OK) == files.size();
+    }
+
+    /**
+     * @return a one-line summary of the batch
+     */
+    public String getSummary() {
+        return String.format("%d files: %d ok, %d failed, %d timed out; %d avails, %d errors in %d ms",
+                             files.size(), getCount(FileReport.Status.OK),
+                             getCount(FileReport.Status.FAILED),
+                             getCount(FileReport.Status.TIMED_OUT),
+                             getAvailCount(), getErrorCount(), elapsedMillis);
+    }
+
+    /**
+     * @return a line for each workbook, followed by the error counts
+     *         by kind and the summary
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (FileReport f : files)
+            sb.append(f).append('\n');
+        for (Map.Entry<ErrorCode, Integer> e : getErrorCounts().entrySet())
+            sb.append(String.format("%8d %s\n", e.getValue(), e.getKey()));
+        return sb.append(getSummary()).toString();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.util.*;
+
+/**
+ * Column-oriented storage for the rows of a sheet.  Each column is
+ * dictionary-encoded: a cell is held as an int code into a table of
+ * the distinct strings that appear in that column.  Values such as
+ * Territory, LicenseType or DisplayName repeat on almost every row,
+ * so this is much smaller than keeping a String[] per row.  Columns
+ * that are nearly unique (ContentID, AvailID, titles) gain nothing
+ * from a dictionary, so they are stored as plain Strings instead.
+ */
+final class ColumnStore {
+    private static final int INITIAL_ROWS = 256;
+    // a column goes raw once it has this many distinct values...
+    private static final int MIN_RAW_DICT = 64;
+    // ...and they are more than 1 in RAW_RATIO of its rows
+    private static final int RAW_RATIO = 4;
+
+    private ArrayList<Column> columns;
+    private Column workTypes;
+    private int[] rowNums;
+    private int[] widths;
+    private int size;
+
+    /**
+     * A single column, dictionary-encoded (code 0 is always the empty
+     * string) until it proves to have too many distinct values, and
+     * then raw.  The index from value to code is needed only while
+     * rows are being added; seal() drops it.
+     */
+    private static class Column {
+        private int[] codes;
+        private ArrayList<String> dict;
+        private HashMap<String, Integer> index;
+        private String[] raw; // instead of codes and dict, if not null
+
+        Column(int capacity) {
+            codes = new int[capacity];
+            dict = new ArrayList<String>();
+            dict.add("");
+        }
+
+        void set(int row, String val) {
+            if (raw != null) {
+                raw[row] = val;
+                return;
+            }
+            if (index == null)
+                buildIndex();
+            Integer code = index.get(val);
+            if (code == null) {
+                if (dict.size() >= MIN_RAW_DICT && dict.size() * RAW_RATIO > row) {
+                    toRaw(row);
+                    raw[row] = val;
+                    return;
+                }
+                code = dict.size();
+                dict.add(val);
+                index.put(val, code);
+            }
+            codes[row] = code;
+        }
+
+        String get(int row) {
+            if (raw != null)
+                return (raw[row] == null) ? "" : raw[row];
+            return dict.get(codes[row]);
+        }
+
+        void grow(int capacity) {
+            if (raw != null)
+                raw = Arrays.copyOf(raw, capacity);
+            else
+                codes = Arrays.copyOf(codes, capacity);
+        }
+
+        /**
+         * Drop the index; it is rebuilt if another row is added
+         */
+        void seal() {
+            index = null;
+            if (dict != null)
+                dict.trimToSize();
+        }
+
+        int getDictionarySize() {
+            return (raw != null) ? 0 : dict.size();
+        }
+
+        private void buildIndex() {
+            index = new HashMap<String, Integer>(dict.size() * 2);
+            for (int i=0; i<dict.size(); i++)
+                index.put(dict.get(i), i);
+        }
+
+        /**
+         * Switch to raw storage, decoding the rows stored so far
+         * @param rows the number of rows stored so far
+         */
+        private void toRaw(int rows) {
+            raw = new String[codes.length];
+            for (int i=0; i<rows; i++)
+                if (codes[i] != 0)
+                    raw[i] = dict.get(codes[i]);
+            codes = null;
+            dict = null;
+            index = null;
+        }
+    } /* Column */
+
+    ColumnStore() {
+        columns = new ArrayList<Column>();
+        workTypes = new Column(INITIAL_ROWS);
+        rowNums = new int[INITIAL_ROWS];
+        widths = new int[INITIAL_ROWS];
+    }
+
+    /**
+     * Append a row
+     * @param fields the cell values of the row
+     * @param rowNum the row number in the source spreadsheet
+     * @param workType the row's (possibly corrected) workType
+     * @return the index of the added row
+     */
+    int add(String[] fields, int rowNum, String workType) {
+        if (size == rowNums.length)
+            grow(size * 2);
+        while (columns.size() < fields.length)
+            columns.add(new Column(rowNums.length));
+        for (int i=0; i<fields.length; i++)
+            if (fields[i] != null && !fields[i].equals(""))
+                columns.get(i).set(size, fields[i]);
+        workTypes.set(size, workType);
+        rowNums[size] = rowNum;
+        widths[size] = fields.length;
+        return size++;
+    }
+
+    private void grow(int capacity) {
+        for (Column c : columns)
+            c.grow(capacity);
+        workTypes.grow(capacity);
+        rowNums = Arrays.copyOf(rowNums, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+    }
+
+    /**
+     * Release what is needed only for adding rows, once the sheet has
+     * been loaded; rows may still be added afterwards, more slowly
+     */
+    void seal() {
+        for (Column c : columns)
+            c.seal();
+        workTypes.seal();
+    }
+
+    /**
+     * @return the number of rows stored
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Rebuild the cell values of a row; the strings themselves are
+     * shared with the dictionaries, only the array is new
+     * @param row index of the row
+     * @return a new array holding the row's cell values
+     */
+    String[] getFields(int row) {
+        String[] fields = new String[widths[row]];
+        for (int i=0; i<fields.length; i++)
+            fields[i] = columns.get(i).get(row);
+        return fields;
+    }
+
+    int getRowNum(int row) {
+        return rowNums[row];
+    }
+
+    String getWorkType(int row) {
+        return workTypes.get(row);
+    }
+
+    /**
+     * @return the total number of distinct values held in
+     *         dictionaries, over all dictionary-encoded columns
+     */
+    int getDictionarySize() {
+        int n = 0;
+        for (Column c : columns)
+            n += c.getDictionarySize();
+        return n;
+    }
+}
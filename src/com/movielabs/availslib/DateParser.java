@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+package com.movielabs.availslib;
+import java.time.LocalDate;
+
+/**
+ * A character-scanning parser for the two date forms accepted in an
+ * Avails spreadsheet: yyyy-mm-dd, and dd-mmm-yyyy (which is how a
+ * date-formatted Excel cell is rendered).  Leading and trailing
+ * whitespace is tolerated and the month abbreviation is case
+ * insensitive.  A parsed date is returned as a packed int so that no
+ * objects are allocated unless the caller asks for a String or
+ * LocalDate.
+ */
+final class DateParser {
+
+    /** returned by parse() when the string is not a valid date */
+    static final int INVALID = -1;
+
+    /** earliest year accepted */
+    static final int MIN_YEAR = 1850;
+
+    private static final int[] DIM = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+    // scratch space for normalize(); rows are converted on several threads
+    private static final ThreadLocal<char[]> buffers = new ThreadLocal<char[]>();
+
+    private DateParser() {
+    }
+
+    /**
+     * Parse a date
+     * @param s the string to be parsed
+     * @return the date packed as (year &lt;&lt; 9) | (month &lt;&lt; 5) | day,
+     *         or INVALID if s is not a well-formed, existing date
+     */
+    static int parse(CharSequence s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && isSpace(s.charAt(start)))
+            start++;
+        while (end > start && isSpace(s.charAt(end - 1)))
+            end--;
+
+        int year, month, day;
+        int i = start;
+        int n = digits(s, i, end);
+        if (n == 4) { // yyyy-mm-dd
+            year = number(s, i, 4);
+            i += 4;
+            if (i >= end || s.charAt(i++) != '-')
+                return INVALID;
+            n = digits(s, i, end);
+            if (n < 1 || n > 2)
+                return INVALID;
+            month = number(s, i, n);
+            i += n;
+            if (i >= end || s.charAt(i++) != '-')
+                return INVALID;
+            n = digits(s, i, end);
+            if (n < 1 || n > 2)
+                return INVALID;
+            day = number(s, i, n);
+            i += n;
+        } else if (n == 1 || n == 2) { // dd-mmm-yyyy
+            day = number(s, i, n);
+            i += n;
+            if (i + 9 > end || s.charAt(i++) != '-')
+                return INVALID;
+            month = month(s.charAt(i), s.charAt(i + 1), s.charAt(i + 2));
+            if (month < 0)
+                return INVALID;
+            i += 3;
+            if (s.charAt(i++) != '-' || digits(s, i, end) != 4)
+                return INVALID;
+            year = number(s, i, 4);
+            i += 4;
+        } else {
+            return INVALID;
+        }
+        if (i != end || !isValid(year, month, day))
+            return INVALID;
+        return (year << 9) | (month << 5) | day;
+    }
+
+    /**
+     * Determine whether a year/month/day combination is a date accepted in avails
+     * @param year the year
+     * @param month the month (1-12)
+     * @param day the day of the month
+     * @return true iff the date exists and is not before MIN_YEAR
+     */
+    static boolean isValid(int year, int month, int day) {
+        if (year < MIN_YEAR || month < 1 || month > 12 || day < 1)
+            return false;
+        if (month == 2 && isLeapYear(year))
+            return day <= 29;
+        return day <= DIM[month - 1];
+    }
+
+    /**
+     * Gregorian leap year rule
+     * @param year the year
+     * @return true iff the year has a February 29th
+     */
+    static boolean isLeapYear(int year) {
+        return ((year % 4) == 0 && (year % 100) != 0) || (year % 400) == 0;
+    }
+
+    static int year(int date) {
+        return date >>> 9;
+    }
+
+    static int month(int date) {
+        return (date >>> 5) & 0xf;
+    }
+
+    static int day(int date) {
+        return date & 0x1f;
+    }
+
+    /**
+     * Write a packed date in yyyy-mm-dd form
+     * @param date a date returned by parse()
+     * @param buf destination buffer
+     * @param off offset in buf; ten characters are written
+     */
+    static void format(int date, char[] buf, int off) {
+        int y = year(date);
+        buf[off++] = (char) ('0' + y / 1000);
+        buf[off++] = (char) ('0' + (y / 100) % 10);
+        buf[off++] = (char) ('0' + (y / 10) % 10);
+        buf[off++] = (char) ('0' + y % 10);
+        buf[off++] = '-';
+        int m = month(date);
+        buf[off++] = (char) ('0' + m / 10);
+        buf[off++] = (char) ('0' + m % 10);
+        buf[off++] = '-';
+        int d = day(date);
+        buf[off++] = (char) ('0' + d / 10);
+        buf[off] = (char) ('0' + d % 10);
+    }
+
+    /**
+     * Append a packed date in yyyy-mm-dd form
+     * @param date a date returned by parse()
+     * @param sb the buffer to append to
+     * @return sb
+     */
+    static StringBuilder append(int date, StringBuilder sb) {
+        int y = year(date);
+        int m = month(date);
+        int d = day(date);
+        sb.append((char) ('0' + y / 1000)).append((char) ('0' + (y / 100) % 10));
+        sb.append((char) ('0' + (y / 10) % 10)).append((char) ('0' + y % 10));
+        sb.append('-').append((char) ('0' + m / 10)).append((char) ('0' + m % 10));
+        sb.append('-').append((char) ('0' + d / 10)).append((char) ('0' + d % 10));
+        return sb;
+    }
+
+    /**
+     * Parse a date and return it in yyyy-mm-dd form.  The date is
+     * formatted into a per-thread buffer, and if that matches s (the
+     * usual case for a sheet that is already in ISO form) s itself is
+     * returned, so only a date that needs rewriting allocates a String.
+     * @param s the string to be parsed
+     * @return the date as yyyy-mm-dd, or null if s is not a valid date
+     */
+    static String normalize(String s) {
+        int date = parse(s);
+        if (date == INVALID)
+            return null;
+        char[] buf = buffers.get();
+        if (buf == null) {
+            buf = new char[10];
+            buffers.set(buf);
+        }
+        format(date, buf, 0);
+        if (s.length() == buf.length) {
+            int i = 0;
+            while (i < buf.length && s.charAt(i) == buf[i])
+                i++;
+            if (i == buf.length)
+                return s;
+        }
+        return new String(buf);
+    }
+
+    /**
+     * @param date a date returned by parse()
+     * @return the date in yyyy-mm-dd form
+     */
+    static String toString(int date) {
+        char[] buf = new char[10];
+        format(date, buf, 0);
+        return new String(buf);
+    }
+
+    /**
+     * @param date a date returned by parse()
+     * @return the corresponding LocalDate
+     */
+    static LocalDate toLocalDate(int date) {
+        return LocalDate.of(year(date), month(date), day(date));
+    }
+
+    // same set as the regex \s
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // number of consecutive ASCII digits starting at i
+    private static int digits(CharSequence s, int i, int end) {
+        int n = 0;
+        while (i + n < end) {
+            char c = s.charAt(i + n);
+            if (c < '0' || c > '9')
+                break;
+            n++;
+        }
+        return n;
+    }
+
+    private static int number(CharSequence s, int i, int n) {
+        int v = 0;
+        for (int j = i; j < i + n; j++)
+            v = v * 10 + (s.charAt(j) - '0');
+        return v;
+    }
+
+    // month number (1-12) of a three letter abbreviation, or -1
+    private static int month(char c0, char c1, char c2) {
+        c0 = lower(c0);
+        c1 = lower(c1);
+        c2 = lower(c2);
+        for (int m = 0; m < 12; m++) {
+            if (MONTHS.charAt(m * 3) == c0 && MONTHS.charAt(m * 3 + 1) == c1 && MONTHS.charAt(m * 3 + 2) == c2)
+                return m + 1;
+        }
+        return -1;
+    }
+
+    private static char lower(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+}
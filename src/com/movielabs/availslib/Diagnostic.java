@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+package com.movielabs.availslib;
+
+/**
+ * A single problem found in a sheet.  Only the parts are stored; the
+ * message is rendered when it is asked for.
+ */
+public class Diagnostic {
+    private final String sheetName;
+    private final int rowNum;
+    private final String column;
+    private final ErrorCode code;
+    private final String raw;
+
+    /**
+     * @param sheetName the sheet the problem was found in
+     * @param rowNum the row number in the source spreadsheet (1-based)
+     * @param column the column or element concerned (may be null)
+     * @param code the kind of problem
+     * @param raw the offending value (may be null)
+     */
+    public Diagnostic(String sheetName, int rowNum, String column, ErrorCode code, String raw) {
+        this.sheetName = sheetName;
+        this.rowNum = rowNum;
+        this.column = column;
+        this.code = code;
+        this.raw = raw;
+    }
+
+    public String getSheetName() {
+        return sheetName;
+    }
+
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public ErrorCode getCode() {
+        return code;
+    }
+
+    public String getRawValue() {
+        return raw;
+    }
+
+    public String getMessage() {
+        return code.format(column, raw);
+    }
+
+    public String toString() {
+        return String.format("Sheet %s Row %5d: %s", sheetName, rowNum, getMessage());
+    }
+}
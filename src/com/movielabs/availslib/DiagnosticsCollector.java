@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+package com.movielabs.availslib;
+import java.util.*;
+
+/**
+ * A DiagnosticsSink that counts problems by ErrorCode and keeps the
+ * first few of them.  Once the limit is reached further problems are
+ * only counted, so a flood of errors costs almost nothing.  Methods
+ * are synchronized, so one collector may be shared by sheets that are
+ * processed in parallel.
+ */
+public class DiagnosticsCollector implements DiagnosticsSink {
+    private final int maxErrors;
+    private final int[] counts;
+    private final ArrayList<Diagnostic> diagnostics;
+    private int total;
+
+    /**
+     * Create a collector that keeps every problem reported
+     */
+    public DiagnosticsCollector() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a collector
+     * @param maxErrors the number of problems to keep; the rest are only counted
+     */
+    public DiagnosticsCollector(int maxErrors) {
+        this.maxErrors = maxErrors;
+        counts = new int[ErrorCode.values().length];
+        diagnostics = new ArrayList<Diagnostic>();
+    }
+
+    public synchronized void report(String sheetName, int rowNum, String column,
+                                    ErrorCode code, String raw) {
+        counts[code.ordinal()]++;
+        if (total++ < maxErrors)
+            diagnostics.add(new Diagnostic(sheetName, rowNum, column, code, raw));
+    }
+
+    /**
+     * Add the problems held by another collector to this one
+     * @param other the collector to be merged
+     */
+    public void addAll(DiagnosticsCollector other) {
+        List<Diagnostic> kept;
+        int[] otherCounts;
+        int otherTotal;
+        synchronized (other) {
+            kept = new ArrayList<Diagnostic>(other.diagnostics);
+            otherCounts = other.counts.clone();
+            otherTotal = other.total;
+        }
+        synchronized (this) {
+            for (int i=0; i<counts.length; i++)
+                counts[i] += otherCounts[i];
+            for (Diagnostic d : kept)
+                if (diagnostics.size() < maxErrors)
+                    diagnostics.add(d);
+            total += otherTotal;
+        }
+    }
+
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    /**
+     * @return the number of problems reported, including those not kept
+     */
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    /**
+     * @param code a kind of problem
+     * @return the number of problems of that kind reported
+     */
+    public synchronized int getCount(ErrorCode code) {
+        return counts[code.ordinal()];
+    }
+
+    /**
+     * @return the number of problems reported of each kind that occurred
+     */
+    public synchronized Map<ErrorCode, Integer> getCounts() {
+        EnumMap<ErrorCode, Integer> ret = new EnumMap<ErrorCode, Integer>(ErrorCode.class);
+        for (ErrorCode c : ErrorCode.values())
+            if (counts[c.ordinal()] > 0)
+                ret.put(c, counts[c.ordinal()]);
+        return ret;
+    }
+
+    /**
+     * @return the problems kept, in the order they were reported
+     */
+    public synchronized List<Diagnostic> getDiagnostics() {
+        return new ArrayList<Diagnostic>(diagnostics);
+    }
+
+    /**
+     * @return true if problems were reported beyond the limit and not kept
+     */
+    public synchronized boolean isTruncated() {
+        return total > diagnostics.size();
+    }
+}
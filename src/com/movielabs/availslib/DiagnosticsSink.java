@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+package com.movielabs.availslib;
+
+/**
+ * Receives the problems found while processing a sheet.  The parts of
+ * each problem are passed separately, so a sink that discards or only
+ * counts a problem need not create any objects or format any text.
+ */
+public interface DiagnosticsSink {
+    /**
+     * Report a problem
+     * @param sheetName the sheet the problem was found in
+     * @param rowNum the row number in the source spreadsheet (1-based)
+     * @param column the column or element concerned (may be null)
+     * @param code the kind of problem
+     * @param raw the offending value (may be null)
+     */
+    void report(String sheetName, int rowNum, String column, ErrorCode code, String raw);
+}
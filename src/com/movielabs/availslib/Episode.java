@@ -24,6 +24,8 @@
  */
 
 package com.movielabs.availslib;
+import java.util.List;
+
 import org.w3c.dom.*;
 
 /**
@@ -141,18 +143,7 @@ public class Episode extends SheetRow {
      */
     private void altIDHelper(Element metadata, COL col) throws Exception {
         if (!fields[col.ordinal()].equals("")) { // optional
-            Element altID = dom.createElement(col.toString());
-            Element cid = dom.createElement("md:Namespace");
-            Text tmp = dom.createTextNode(MISSING);
-            cid.appendChild(tmp);
-            altID.appendChild(cid);
-            altID.appendChild(mGenericElement("md:Identifier", 
-                                              fields[col.ordinal()], false));
-            Element loc = dom.createElement("md:Location");
-            tmp = dom.createTextNode(MISSING);
-            loc.appendChild(tmp);
-            altID.appendChild(loc);
-            metadata.appendChild(altID);
+            metadata.appendChild(mAltIdentifier(col.toString(), fields[col.ordinal()]));
         }
     }
 
@@ -186,12 +177,9 @@ public class Episode extends SheetRow {
 
         // ProductID --> EditEIDR-S
         if (!fields[COL.EpisodeProductID.ordinal()].equals("")) { // optional field
-            String productID = normalizeEIDR(fields[COL.EpisodeProductID.ordinal()]);
-            if (productID == null) {
-                reportError("Invalid ProductID: " + fields[COL.EpisodeProductID.ordinal()]);
-            } else {
+            String productID = checkEIDR("ProductID", fields[COL.EpisodeProductID.ordinal()]);
+            if (productID != null)
                 fields[COL.EpisodeProductID.ordinal()] = productID;
-            }
             episodeMetadata.appendChild(mGenericElement(COL.EpisodeProductID.toString(),
                                                  fields[COL.EpisodeProductID.ordinal()], false));
         }
@@ -201,12 +189,9 @@ public class Episode extends SheetRow {
 
         // ReleaseYear ---> ReleaseDate
         if (!fields[COL.ReleaseYear.ordinal()].equals("")) { // optional
-            String year = normalizeYear(fields[COL.ReleaseYear.ordinal()]);
-            if (year == null) {
-                reportError("Invalid ReleaseYear: " + fields[COL.ReleaseYear.ordinal()]);
-            } else {
+            String year = checkYear(fields[COL.ReleaseYear.ordinal()]);
+            if (year != null)
                 fields[COL.ReleaseYear.ordinal()] = year;
-            }
             episodeMetadata.appendChild(mGenericElement(COL.ReleaseYear.toString(), 
                                                  fields[COL.ReleaseYear.ordinal()], false));
         }
@@ -220,7 +205,7 @@ public class Episode extends SheetRow {
         String date = fields[COL.ReleaseHistoryOriginal.ordinal()];
         if (!date.equals("")) {
             if ((e = mReleaseHistory(COL.ReleaseHistoryOriginal.toString(),
-                                     normalizeDate(date), "original")) != null)
+                                     date, "original")) != null)
                 episodeMetadata.appendChild(e);
         }
          
@@ -228,7 +213,7 @@ public class Episode extends SheetRow {
         date = fields[COL.ReleaseHistoryPhysicalHV.ordinal()];
         if (!date.equals("")) {
             if ((e = mReleaseHistory(COL.ReleaseHistoryPhysicalHV.toString(),
-                                     normalizeDate(date), "DVD")) != null)
+                                     date, "DVD")) != null)
                 episodeMetadata.appendChild(e);
         }
 
@@ -243,12 +228,9 @@ public class Episode extends SheetRow {
 
         // EncodeID --> EditEIDR-S
         if (!fields[COL.EncodeID.ordinal()].equals("")) { // optional field
-            String encodeID = normalizeEIDR(fields[COL.EncodeID.ordinal()]);
-            if (encodeID == null) {
-                reportError("Invalid EncodeID: " + fields[COL.EncodeID.ordinal()]);
-            } else {
+            String encodeID = checkEIDR("EncodeID", fields[COL.EncodeID.ordinal()]);
+            if (encodeID != null)
                 fields[COL.EncodeID.ordinal()] = encodeID;
-            }
             episodeMetadata.appendChild(mGenericElement(COL.EncodeID.toString(),
                                                  fields[COL.EncodeID.ordinal()], false));
         }
@@ -471,7 +453,7 @@ public class Episode extends SheetRow {
         if ((e = mPublisher("ServiceProvider", fields[COL.ServiceProvider.ordinal()], false)) != null)
             avail.appendChild(e);
         // AvailType ('episode' for an Episode)
-        avail.appendChild(mGenericElement("AvailType", "episode", true));
+        avail.appendChild(fragments().text("AvailType", "episode"));
 
         // ShortDescription
         // XXX Doc says optional, schema says mandatory
@@ -493,6 +475,89 @@ public class Episode extends SheetRow {
         return avail;
     }
 
+    /**
+     * Apply the same rules as makeAvail() without creating any XML;
+     * called from superclass
+     */
+    protected void validateAvail() throws Exception {
+        String val;
+
+        // Avail
+        checkDisposition(fields[COL.EntryType.ordinal()]);
+        checkPublisher(fields[COL.DisplayName.ordinal()], true);
+        checkPublisher(fields[COL.ServiceProvider.ordinal()], false);
+        checkRequired("ShortDescription", shortDesc);
+
+        // Asset: Episode
+        String territory = fields[COL.Territory.ordinal()];
+        checkRequired(COL.EpisodeTitleInternalAlias.toString(),
+                      fields[COL.EpisodeTitleInternalAlias.ordinal()]);
+        if (!fields[COL.EpisodeProductID.ordinal()].equals(""))
+            checkEIDR("ProductID", fields[COL.EpisodeProductID.ordinal()]);
+        if (!fields[COL.ReleaseYear.ordinal()].equals(""))
+            checkYear(fields[COL.ReleaseYear.ordinal()]);
+        if (!(val = fields[COL.TotalRunTime.ordinal()]).equals(""))
+            checkRunLength(val);
+        if (!(val = fields[COL.ReleaseHistoryOriginal.ordinal()]).equals(""))
+            checkReleaseHistory(COL.ReleaseHistoryOriginal.toString(), val);
+        if (!(val = fields[COL.ReleaseHistoryPhysicalHV.ordinal()]).equals(""))
+            checkReleaseHistory(COL.ReleaseHistoryPhysicalHV.toString(), val);
+        checkCaptionsExemption(fields[COL.CaptionIncluded.ordinal()],
+                               fields[COL.CaptionExemption.ordinal()]);
+        checkRatings(fields[COL.RatingSystem.ordinal()], fields[COL.RatingValue.ordinal()],
+                     fields[COL.RatingReason.ordinal()], territory);
+        if (!fields[COL.EncodeID.ordinal()].equals(""))
+            checkEIDR("EncodeID", fields[COL.EncodeID.ordinal()]);
+        if (!(val = fields[COL.LocalizationType.ordinal()]).equals(""))
+            checkLocalizationType(val);
+        checkCount(COL.EpisodeNumber.toString(), fields[COL.EpisodeNumber.ordinal()]);
+
+        // Asset: Season
+        checkRequired(COL.SeasonTitleInternalAlias.toString(),
+                      fields[COL.SeasonTitleInternalAlias.ordinal()]);
+        checkCount(COL.SeasonNumber.toString(), fields[COL.SeasonNumber.ordinal()]);
+        if (!(val = fields[COL.EpisodeCount.ordinal()]).equals(""))
+            checkInt(COL.EpisodeCount.toString(), val);
+
+        // Asset: Series
+        checkRequired(COL.SeriesTitleInternalAlias.toString(),
+                      fields[COL.SeriesTitleInternalAlias.ordinal()]);
+        if (!(val = fields[COL.SeasonCount.ordinal()]).equals(""))
+            checkInt(COL.SeasonCount.toString(), val);
+
+        // Transaction
+        checkLicenseType(fields[COL.LicenseType.ordinal()]);
+        checkTerritory(territory);
+        checkStart(fields[COL.Start.ordinal()]);
+        checkEnd(fields[COL.End.ordinal()]);
+        checkStoreLanguage(fields[COL.StoreLanguage.ordinal()]);
+        checkLicenseRightsDescription(fields[COL.LicenseRightsDescription.ordinal()]);
+        checkFormatProfile(fields[COL.FormatProfile.ordinal()]);
+        checkPriceType(fields[COL.PriceType.ordinal()]);
+        if (!(val = fields[COL.RentalDuration.ordinal()]).equals(""))
+            checkDuration(val);
+        if (!(val = fields[COL.WatchDuration.ordinal()]).equals(""))
+            checkDuration(val);
+        if (!(val = fields[COL.HoldbackLanguage.ordinal()].trim()).equals(""))
+            checkLanguageTerm(val);
+        if (!(val = fields[COL.HoldbackExclusionLanguage.ordinal()].trim()).equals(""))
+            checkLanguageTerm(val);
+
+        // Exception Flag
+        checkExceptionFlag(fields[COL.ExceptionFlag.ordinal()]);
+    } /* validateAvail() */
+
+    /**
+     * Resolve this class's columns against a sheet's header row
+     * @param header the cell values of the header row
+     * @param missing if not null, the names of columns not found are added to it
+     * @return the column map (see SheetRow.mapColumns()), or null if
+     *         the sheet uses the standard layout
+     */
+    static int[] columnMap(String[] header, List<String> missing) {
+        return mapColumns(COL.values(), header, missing);
+    }
+
     /**
      * Create an object spreadsheet row representing a TV Episode avail
      * @param parent the parent sheet object
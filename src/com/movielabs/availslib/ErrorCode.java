@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+package com.movielabs.availslib;
+
+/**
+ * The kinds of problem that can be reported while processing a sheet.
+ * Each has a message template; %1$s is replaced by the column or
+ * element concerned and %2$s by the offending value.
+ */
+public enum ErrorCode {
+    MISSING_VALUE ("missing required value on element: %1$s"),
+    MISSING_COUNT ("missing required count value on element: %1$s"),
+    INVALID_INTEGER ("invalid integer value on element: %1$s: %2$s"),
+    INVALID_DATE ("Invalid %1$s: %2$s"),
+    INVALID_EIDR ("Invalid %1$s: %2$s"),
+    INVALID_YEAR ("Invalid ReleaseYear: %2$s"),
+    MISSING_RATING_SYSTEM ("RatingSystem not specified"),
+    INVALID_COUNTRY ("invalid Country Code: %2$s"),
+    INVALID_DISPOSITION ("invalid Disposition: %2$s"),
+    MISSING_DISPLAY_NAME ("missing md:DisplayName"),
+    INVALID_LICENSE_TYPE ("invalid LicenseType: %2$s"),
+    MISSING_START ("Missing Start date: "),
+    INVALID_START ("Invalid Start date: %2$s"),
+    MISSING_END ("End date may not be null"),
+    INVALID_END ("Invalid End Condition %2$s"),
+    INVALID_LANGUAGE ("invalid language tag: '%2$s'"),
+    SUSPICIOUS_LANGUAGE ("Suspicious Language Tag: %2$s"),
+    INVALID_LRD ("invalid LicenseRightsDescription %2$s"),
+    INVALID_FORMAT_PROFILE ("invalid FormatProfile: %2$s"),
+    INVALID_PRICE_TYPE ("Invalid PriceType: %2$s"),
+    INVALID_DURATION (" invalid duration: %2$s"),
+    RUN_LENGTH_FORMAT ("invalid duration string (verify Excel cell format is 'Text'): %2$s"),
+    INVALID_RUN_LENGTH ("invalid duration string %2$s"),
+    INVALID_LOCALIZATION ("invalid LocalizationOffering value: %2$s"),
+    UNEXPECTED_CAPTION_EXEMPTION ("CaptionExemption specified without CaptionIncluded"),
+    MISSING_CAPTION_EXEMPTION ("Captions not included and CaptionExemption not specified"),
+    INVALID_CAPTION_EXEMPTION ("Invalid CaptionExamption Value: %2$s"),
+    INVALID_EXCEPTION_FLAG ("invalid ExceptionFlag"),
+    WORKTYPE_CORRECTED ("corrected from '%2$s'"),
+    INVALID_WORKTYPE ("invalid workType: '%2$s'"),
+    OTHER ("%2$s");
+
+    private final String template;
+
+    private ErrorCode(String template) {
+        this.template = template;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Render the message for a problem of this kind
+     * @param column the column or element concerned (may be null)
+     * @param raw the offending value (may be null)
+     * @return the message
+     */
+    public String format(String column, String raw) {
+        return String.format(template, column, raw);
+    }
+}
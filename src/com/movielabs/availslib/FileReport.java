@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.io.File;
+import java.util.*;
+
+/**
+ * The result of converting one workbook in a batch: how it ended, how
+ * long it took, what was written, and every problem found in its rows
+ */
+public class FileReport extends DiagnosticsCollector {
+    /**
+     * How the conversion of a workbook ended
+     */
+    public enum Status {
+        /** every avails sheet was converted; rows with problems may have been skipped */
+        OK,
+        /** the workbook could not be read or written */
+        FAILED,
+        /** the conversion did not finish in time and was abandoned */
+        TIMED_OUT
+    }
+
+    private final File file;
+    private Status status;
+    private long elapsedMillis;
+    private int sheetCount;
+    private int availCount;
+    private List<File> outputs = Collections.emptyList();
+    private List<String> skipped = Collections.emptyList();
+    private Throwable failure;
+
+    /**
+     * Create an empty report
+     * @param file the workbook being converted
+     * @param maxErrors the number of problems to keep; the rest are only counted
+     */
+    public FileReport(File file, int maxErrors) {
+        super(maxErrors);
+        this.file = file;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    void addSheet(File output, int avails) {
+        if (outputs.isEmpty())
+            outputs = new ArrayList<File>();
+        outputs.add(output);
+        sheetCount++;
+        availCount += avails;
+    }
+
+    void addSkippedSheet(String sheetName) {
+        if (skipped.isEmpty())
+            skipped = new ArrayList<String>();
+        skipped.add(sheetName);
+    }
+
+    void setFailure(Throwable failure) {
+        this.failure = failure;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the time from the start of the conversion until it
+     *         finished, failed or was abandoned, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the number of sheets written
+     */
+    public int getSheetCount() {
+        return sheetCount;
+    }
+
+    /**
+     * @return the number of avails written, over all sheets
+     */
+    public int getAvailCount() {
+        return availCount;
+    }
+
+    /**
+     * @return the XML files written, one per sheet that holds avails
+     */
+    public List<File> getOutputs() {
+        return Collections.unmodifiableList(outputs);
+    }
+
+    /**
+     * @return the sheets that were not converted because they are not
+     *         laid out as avails or hold none; this is not an error
+     */
+    public List<String> getSkippedSheets() {
+        return Collections.unmodifiableList(skipped);
+    }
+
+    /**
+     * @return the reason the conversion failed, or null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public String toString() {
+        String s = String.format("%s: %s in %d ms, %d sheets (%d skipped), %d avails, %d errors",
+                                 file, status, elapsedMillis, sheetCount, skipped.size(),
+                                 availCount, getTotal());
+        return (failure == null) ? s : s + " (" + failure + ")";
+    }
+}
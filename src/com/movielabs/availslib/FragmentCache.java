@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.util.HashMap;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Prebuilt copies of the XML fragments that are the same in every
+ * avail, such as the empty ContactInfo of a Licensor or the
+ * AvailType element.  Each template is built once per Document and
+ * is never itself inserted in the tree; callers receive a deep clone,
+ * which is cheaper than building the fragment element by element.
+ * A cache is attached to its Document as user data, so it lives
+ * exactly as long as the Document does.
+ * <p>
+ * In a streaming document, whose avails are only ever passed to an
+ * AvailXMLWriter, the template is instead a single processing
+ * instruction naming the fragment.  The writer replaces it with the
+ * fragment's encoded bytes, so neither the fragment's nodes nor its
+ * encoding are repeated for each avail.
+ */
+class FragmentCache {
+    private static final String KEY = FragmentCache.class.getName();
+
+    /**
+     * Target of the processing instructions that stand in for
+     * fragments in a streaming document; the data is the fragment's key
+     */
+    static final String PI_TARGET = "availslib-fragment";
+
+    // one copy of each fragment built for a streaming document, by key
+    private static final HashMap<String, Node> prototypes = new HashMap<String, Node>();
+
+    private Document dom;
+    private boolean streaming;
+    private Node contactInfo;
+    private HashMap<String, HashMap<String, Node>> text =
+        new HashMap<String, HashMap<String, Node>>();
+    private HashMap<String, Node> comments = new HashMap<String, Node>();
+
+    private FragmentCache(Document dom, boolean streaming) {
+        this.dom = dom;
+        this.streaming = streaming;
+    }
+
+    /**
+     * Get the cache for a Document, creating it if necessary
+     * @param dom the document the fragments will be inserted in
+     * @return the document's cache
+     */
+    static FragmentCache get(Document dom) {
+        FragmentCache fc = (FragmentCache) dom.getUserData(KEY);
+        if (fc == null) {
+            fc = new FragmentCache(dom, false);
+            dom.setUserData(KEY, fc, null);
+        }
+        return fc;
+    }
+
+    /**
+     * Give a new Document a cache of placeholders rather than
+     * fragments; its avails can then only be written by an AvailXMLWriter
+     * @param dom a document with no cache yet
+     */
+    static void setStreaming(Document dom) {
+        dom.setUserData(KEY, new FragmentCache(dom, true), null);
+    }
+
+    /**
+     * Get the fragment a placeholder stands for
+     * @param key the data of the placeholder
+     * @return the fragment, which must not be modified; null if the key is unknown
+     */
+    static synchronized Node getPrototype(String key) {
+        return prototypes.get(key);
+    }
+
+    Document getDocument() {
+        return dom;
+    }
+
+    /**
+     * Get an empty mdmec:ContactInfo element, with empty md:Name and
+     * md:PrimaryEmail children
+     * @return a new copy of the fragment
+     */
+    Node contactInfo() {
+        if (contactInfo == null) {
+            Element e = dom.createElement("mdmec:ContactInfo");
+            e.appendChild(dom.createElement("md:Name"));
+            e.appendChild(dom.createElement("md:PrimaryEmail"));
+            contactInfo = template("mdmec:ContactInfo", e);
+        }
+        return contactInfo.cloneNode(true);
+    }
+
+    /**
+     * Get an element containing constant text, e.g. AvailType or a
+     * placeholder for a value that can't be taken from the spreadsheet
+     * @param name the name of the element
+     * @param val the text of the element
+     * @return a new copy of the element
+     */
+    Node text(String name, String val) {
+        HashMap<String, Node> byValue = text.get(name);
+        if (byValue == null) {
+            byValue = new HashMap<String, Node>();
+            text.put(name, byValue);
+        }
+        Node n = byValue.get(val);
+        if (n == null) {
+            Element e = dom.createElement(name);
+            e.appendChild(dom.createTextNode(val));
+            n = template(name + "\n" + val, e);
+            byValue.put(val, n);
+        }
+        return n.cloneNode(true);
+    }
+
+    /**
+     * Get a comment with constant text
+     * @param val the text of the comment
+     * @return a new copy of the comment
+     */
+    Node comment(String val) {
+        Node c = comments.get(val);
+        if (c == null) {
+            c = template("!--" + val, dom.createComment(val));
+            comments.put(val, c);
+        }
+        return c.cloneNode(false);
+    }
+
+    /**
+     * Choose what is copied for a fragment
+     * @param key identifies the fragment among all others
+     * @param fragment the fragment, built on this cache's document
+     * @return the fragment or, for a streaming document, a
+     *         placeholder naming it
+     */
+    private Node template(String key, Node fragment) {
+        if (!streaming)
+            return fragment;
+        synchronized (FragmentCache.class) {
+            if (!prototypes.containsKey(key))
+                prototypes.put(key, fragment);
+        }
+        return dom.createProcessingInstruction(PI_TARGET, key);
+    }
+}
@@ -25,6 +25,9 @@
 
 package com.movielabs.availslib;
 
+import java.util.Locale;
+import java.util.MissingResourceException;
+
 public enum ISO639_2_Code {
     /**
      *  	aa 	Afar 	afar 	Danakil-Sprache
@@ -2069,4 +2072,102 @@ public enum ISO639_2_Code {
         return valueOf(v);
     }
 
+    /**
+     * Bibliographic (B) and terminologic (T) codes for the same language
+     */
+    private static final String[][] PAIRS = {
+        { "alb", "sqi" }, { "arm", "hye" }, { "baq", "eus" }, { "bur", "mya" },
+        { "chi", "zho" }, { "cze", "ces" }, { "dut", "nld" }, { "fre", "fra" },
+        { "geo", "kat" }, { "ger", "deu" }, { "gre", "ell" }, { "ice", "isl" },
+        { "mac", "mkd" }, { "mao", "mri" }, { "may", "msa" }, { "per", "fas" },
+        { "rum", "ron" }, { "slo", "slk" }, { "tib", "bod" }, { "wel", "cym" },
+    };
+
+    /*
+     * Every code is packed into a base-26 number; 2-letter (ISO 639-1)
+     * codes occupy the first 26*26 slots and 3-letter codes the rest
+     */
+    private static final int SHORT = 26 * 26;
+    private static final ISO639_2_Code[] INDEX = new ISO639_2_Code[SHORT + 26 * 26 * 26];
+    private static final ISO639_2_Code[] ALTERNATE = new ISO639_2_Code[values().length];
+
+    static {
+        for (ISO639_2_Code c : values())
+            INDEX[index(c.val, 0, c.val.length())] = c;
+        for (String[] p : PAIRS) {
+            ISO639_2_Code b = valueOf(p[0]);
+            ISO639_2_Code t = valueOf(p[1]);
+            ALTERNATE[b.ordinal()] = t;
+            ALTERNATE[t.ordinal()] = b;
+        }
+        // ISO 639-1 codes resolve to the terminologic code; one with
+        // no ISO 639-2 equivalent in this list (e.g. the withdrawn
+        // "mo") is not indexed
+        for (String s : Locale.getISOLanguages()) {
+            int idx = index(s, 0, s.length());
+            if (idx < 0)
+                continue;
+            try {
+                String t = new Locale(s).getISO3Language();
+                int tidx = index(t, 0, t.length());
+                if (tidx >= SHORT)
+                    INDEX[idx] = INDEX[tidx];
+            } catch (MissingResourceException e) {
+            }
+        }
+    }
+
+    /**
+     * Look up a language code without throwing an exception if it is
+     * unknown.  ISO 639-1 (2-letter) codes are accepted and resolve
+     * to the corresponding ISO 639-2/T code; case is ignored.
+     * @param v the code (may be null)
+     * @return the code's enum, or null if v is not a known code
+     */
+    public static ISO639_2_Code lookup(CharSequence v) {
+        return (v == null) ? null : lookup(v, 0, v.length());
+    }
+
+    /**
+     * Look up a language code held in part of a string, without
+     * creating any objects or throwing an exception
+     * @param v the string containing the code
+     * @param start index of the first character of the code
+     * @param end index after the last character of the code
+     * @return the code's enum, or null if v[start..end) is not a known code
+     */
+    public static ISO639_2_Code lookup(CharSequence v, int start, int end) {
+        int idx = index(v, start, end);
+        return (idx < 0) ? null : INDEX[idx];
+    }
+
+    /**
+     * Get the other code of a bibliographic/terminologic pair,
+     * e.g. fra for fre and vice versa
+     * @return the alternate code, or null if this language has only one code
+     */
+    public ISO639_2_Code alternate() {
+        return ALTERNATE[ordinal()];
+    }
+
+    /**
+     * Pack a 2- or 3-letter code into its slot in INDEX
+     * @return the slot, or -1 if the code can't be a language code
+     */
+    private static int index(CharSequence v, int start, int end) {
+        int len = end - start;
+        if (len != 2 && len != 3)
+            return -1;
+        int idx = 0;
+        for (int i=start; i<end; i++) {
+            char c = v.charAt(i);
+            if (c >= 'A' && c <= 'Z')
+                c += 'a' - 'A';
+            if (c < 'a' || c > 'z')
+                return -1;
+            idx = idx * 26 + (c - 'a');
+        }
+        return (len == 2) ? idx : SHORT + idx;
+    }
+
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+
+import java.util.Locale;
+
+/**
+ * Precomputed lookup tables for ISO 3166-1 alpha-2 country codes and
+ * ISO 639-1/639-2 language codes.  Each country code is packed into a
+ * base-26 number which indexes a bitset, so a lookup is a few
+ * arithmetic operations and a single bit test; language codes are
+ * resolved the same way by ISO639_2_Code.lookup().  No objects are
+ * created and invalid input never causes an exception to be thrown.
+ */
+final class ISOCodes {
+    private static final long[] COUNTRY2  = new long[bits(26 * 26)];
+
+    static {
+        for (String s : Locale.getISOCountries())
+            set(COUNTRY2, 2, s);
+    }
+
+    private ISOCodes() {
+    }
+
+    /**
+     * Determine if a string is an ISO 3166-1 alpha-2 country code; the
+     * code must be in upper case
+     * @param s the string to be tested (may be null)
+     * @return true iff s is a valid code
+     */
+    static boolean isCountry(CharSequence s) {
+        return s != null && test(COUNTRY2, 2, s, 0, s.length(), false);
+    }
+
+    /**
+     * Determine if a string is an ISO 639-1 (2-letter) or ISO 639-2
+     * (3-letter) language code, ignoring case
+     * @param s the string to be tested (may be null)
+     * @return true iff s is a valid code
+     */
+    static boolean isLanguage(CharSequence s) {
+        return s != null && isLanguage(s, 0, s.length());
+    }
+
+    /**
+     * Determine if part of a string is an ISO 639-1 (2-letter) or
+     * ISO 639-2 (3-letter) language code, ignoring case
+     * @param s the string containing the code
+     * @param start index of the first character of the code
+     * @param end index after the last character of the code
+     * @return true iff s[start..end) is a valid code
+     */
+    static boolean isLanguage(CharSequence s, int start, int end) {
+        return ISO639_2_Code.lookup(s, start, end) != null;
+    }
+
+    /**
+     * Determine if part of a string is an ISO 639-2 (3-letter)
+     * language code, ignoring case
+     * @param s the string containing the code
+     * @param start index of the first character of the code
+     * @param end index after the last character of the code
+     * @return true iff s[start..end) is a valid code
+     */
+    static boolean isISO639_2(CharSequence s, int start, int end) {
+        return end - start == 3 && ISO639_2_Code.lookup(s, start, end) != null;
+    }
+
+    private static int bits(int n) {
+        return (n + 63) >>> 6;
+    }
+
+    /**
+     * Pack a code into its base-26 index
+     * @return the index, or -1 if the code contains anything but the letters A-Z
+     */
+    private static int pack(CharSequence s, int start, int end, boolean foldCase) {
+        int idx = 0;
+        for (int i=start; i<end; i++) {
+            char c = s.charAt(i);
+            if (foldCase && c >= 'a' && c <= 'z')
+                c -= 'a' - 'A';
+            if (c < 'A' || c > 'Z')
+                return -1;
+            idx = idx * 26 + (c - 'A');
+        }
+        return idx;
+    }
+
+    private static boolean test(long[] set, int width, CharSequence s, int start, int end,
+                                boolean foldCase) {
+        if (end - start != width)
+            return false;
+        int idx = pack(s, start, end, foldCase);
+        return idx >= 0 && (set[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    private static void set(long[] set, int width, String s) {
+        if (s.length() != width)
+            return;
+        int idx = pack(s, 0, width, true);
+        if (idx >= 0)
+            set[idx >>> 6] |= 1L << idx;
+    }
+}
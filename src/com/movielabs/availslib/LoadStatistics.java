@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+
+/**
+ * Statistics gathered while a sheet is loaded
+ */
+public class LoadStatistics {
+    private final String sheetName;
+    private final int rowCount;
+    private final long cellCount;
+    private final long sharedCount;
+    private final int distinctCount;
+
+    LoadStatistics(String sheetName, int rowCount, StringPool pool) {
+        this.sheetName = sheetName;
+        this.rowCount = rowCount;
+        cellCount = pool.getLookups();
+        sharedCount = pool.getHits();
+        distinctCount = pool.size();
+    }
+
+    public String getSheetName() {
+        return sheetName;
+    }
+
+    /**
+     * @return the number of non-empty rows read (not only avails)
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the number of non-empty cell values read
+     */
+    public long getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * @return the number of cell values that share an existing String instance
+     */
+    public long getSharedCount() {
+        return sharedCount;
+    }
+
+    /**
+     * @return the number of distinct values held by the string pool
+     */
+    public int getDistinctCount() {
+        return distinctCount;
+    }
+
+    /**
+     * @return the fraction (0 to 1) of cell values that were deduplicated
+     */
+    public double getDedupRatio() {
+        return (cellCount == 0) ? 0 : (double) sharedCount / cellCount;
+    }
+
+    public String toString() {
+        return String.format("Sheet %s: %d rows, %d cells, %d distinct values, %.1f%% deduplicated",
+                             sheetName, rowCount, cellCount, distinctCount, 100 * getDedupRatio());
+    }
+}
@@ -24,6 +24,8 @@
  */
 
 package com.movielabs.availslib;
+import java.util.List;
+
 import org.w3c.dom.*;
 
 /**
@@ -127,40 +129,23 @@ public class Movie extends SheetRow {
 
         // ProductID --> EditEIDR-S
         if (!fields[COL.ProductID.ordinal()].equals("")) { // optional field
-            String productID = normalizeEIDR(fields[COL.ProductID.ordinal()]);
-            if (productID == null) {
-                reportError("Invalid ProductID: " + fields[COL.ProductID.ordinal()]);
-            } else {
+            String productID = checkEIDR("ProductID", fields[COL.ProductID.ordinal()]);
+            if (productID != null)
                 fields[COL.ProductID.ordinal()] = productID;
-            }
             metadata.appendChild(mGenericElement(COL.ProductID.toString(),
                                                  fields[COL.ProductID.ordinal()], false));
         }
 
         // AltID --> AltIdentifier
         if (!fields[COL.AltID.ordinal()].equals("")) { // optional
-            Element altID = dom.createElement("AltIdentifier");
-            Element cid = dom.createElement("md:Namespace");
-            Text tmp = dom.createTextNode(MISSING);
-            cid.appendChild(tmp);
-            altID.appendChild(cid);
-            altID.appendChild(mGenericElement(COL.AltID.toString(),
-                                              fields[COL.AltID.ordinal()], false));
-            Element loc = dom.createElement("md:Location");
-            tmp = dom.createTextNode(MISSING);
-            loc.appendChild(tmp);
-            altID.appendChild(loc);
-            metadata.appendChild(altID);
+            metadata.appendChild(mAltIdentifier("AltIdentifier", fields[COL.AltID.ordinal()]));
         }
 
         // ReleaseYear ---> ReleaseDate
         if (!fields[COL.ReleaseYear.ordinal()].equals("")) { // optional
-            String year = normalizeYear(fields[COL.ReleaseYear.ordinal()]);
-            if (year == null) {
-                reportError("Invalid ReleaseYear: " + fields[COL.ReleaseYear.ordinal()]);
-            } else {
+            String year = checkYear(fields[COL.ReleaseYear.ordinal()]);
+            if (year != null)
                 fields[COL.ReleaseYear.ordinal()] = year;
-            }
             metadata.appendChild(mGenericElement(COL.ReleaseYear.toString(), 
                                                  fields[COL.ReleaseYear.ordinal()], false));
         }
@@ -175,7 +160,7 @@ public class Movie extends SheetRow {
         String date = fields[COL.ReleaseHistoryOriginal.ordinal()];
         if (!date.equals("")) {
             if ((e = mReleaseHistory(COL.ReleaseHistoryOriginal.toString(),
-                                     normalizeDate(date), "original")) != null)
+                                     date, "original")) != null)
                 metadata.appendChild(e);
         }
          
@@ -183,7 +168,7 @@ public class Movie extends SheetRow {
         date = fields[COL.ReleaseHistoryPhysicalHV.ordinal()];
         if (!date.equals("")) {
             if ((e = mReleaseHistory(COL.ReleaseHistoryPhysicalHV.toString(),
-                                     normalizeDate(date), "DVD")) != null)
+                                     date, "DVD")) != null)
                 metadata.appendChild(e);
         }
 
@@ -198,12 +183,9 @@ public class Movie extends SheetRow {
 
         // EncodeID --> EditEIDR-S
         if (!fields[COL.EncodeID.ordinal()].equals("")) { // optional field
-            String encodeID = normalizeEIDR(fields[COL.EncodeID.ordinal()]);
-            if (encodeID == null) {
-                reportError("Invalid EncodeID: " + fields[COL.EncodeID.ordinal()]);
-            } else {
+            String encodeID = checkEIDR("EncodeID", fields[COL.EncodeID.ordinal()]);
+            if (encodeID != null)
                 fields[COL.EncodeID.ordinal()] = encodeID;
-            }
             metadata.appendChild(mGenericElement(COL.EncodeID.toString(),
                                                  fields[COL.EncodeID.ordinal()], false));
         }
@@ -339,7 +321,7 @@ public class Movie extends SheetRow {
             avail.appendChild(e);
 
         // AvailType ('single' for a Movie)
-        avail.appendChild(mGenericElement("AvailType", "single", true));
+        avail.appendChild(fragments().text("AvailType", "single"));
 
         // ShortDescription
         // XXX Doc says optional, schema says mandatory
@@ -361,6 +343,74 @@ public class Movie extends SheetRow {
         return avail;
     }
 
+    /**
+     * Apply the same rules as makeAvail() without creating any XML;
+     * called from superclass
+     */
+    protected void validateAvail() throws Exception {
+        String val;
+
+        // Avail
+        checkDisposition(fields[COL.EntryType.ordinal()]);
+        checkPublisher(fields[COL.DisplayName.ordinal()], true);
+        checkPublisher(fields[COL.ServiceProvider.ordinal()], false);
+        checkRequired("ShortDescription", shortDesc);
+
+        // Asset
+        String territory = fields[COL.Territory.ordinal()];
+        checkRequired(COL.TitleInternalAlias.toString(), fields[COL.TitleInternalAlias.ordinal()]);
+        if (!fields[COL.ProductID.ordinal()].equals(""))
+            checkEIDR("ProductID", fields[COL.ProductID.ordinal()]);
+        if (!fields[COL.ReleaseYear.ordinal()].equals(""))
+            checkYear(fields[COL.ReleaseYear.ordinal()]);
+        if (!(val = fields[COL.TotalRunTime.ordinal()]).equals(""))
+            checkRunLength(val);
+        if (!(val = fields[COL.ReleaseHistoryOriginal.ordinal()]).equals(""))
+            checkReleaseHistory(COL.ReleaseHistoryOriginal.toString(), val);
+        if (!(val = fields[COL.ReleaseHistoryPhysicalHV.ordinal()]).equals(""))
+            checkReleaseHistory(COL.ReleaseHistoryPhysicalHV.toString(), val);
+        checkCaptionsExemption(fields[COL.CaptionIncluded.ordinal()],
+                               fields[COL.CaptionExemption.ordinal()]);
+        checkRatings(fields[COL.RatingSystem.ordinal()], fields[COL.RatingValue.ordinal()],
+                     fields[COL.RatingReason.ordinal()], territory);
+        if (!fields[COL.EncodeID.ordinal()].equals(""))
+            checkEIDR("EncodeID", fields[COL.EncodeID.ordinal()]);
+        if (!(val = fields[COL.LocalizationType.ordinal()]).equals(""))
+            checkLocalizationType(val);
+
+        // Transaction
+        checkLicenseType(fields[COL.LicenseType.ordinal()]);
+        checkTerritory(territory);
+        checkStart(fields[COL.Start.ordinal()]);
+        checkEnd(fields[COL.End.ordinal()]);
+        checkStoreLanguage(fields[COL.StoreLanguage.ordinal()]);
+        checkLicenseRightsDescription(fields[COL.LicenseRightsDescription.ordinal()]);
+        checkFormatProfile(fields[COL.FormatProfile.ordinal()]);
+        checkPriceType(fields[COL.PriceType.ordinal()]);
+        if (!(val = fields[COL.RentalDuration.ordinal()]).equals(""))
+            checkDuration(val);
+        if (!(val = fields[COL.WatchDuration.ordinal()]).equals(""))
+            checkDuration(val);
+        if (!(val = fields[COL.HoldbackLanguage.ordinal()].trim()).equals(""))
+            checkLanguageTerm(val);
+        if (!(val = fields[COL.HoldbackExclusionLanguage.ordinal()].trim()).equals(""))
+            checkLanguageTerm(val);
+
+        // Exception Flag
+        checkExceptionFlag(fields[COL.ExceptionFlag.ordinal()]);
+    } /* validateAvail() */
+
+    /**
+     * Resolve this class's columns against a sheet's header row
+     * @param header the cell values of the header row
+     * @param missing if not null, the names of columns not found are added to it
+     * @return the column map (see SheetRow.mapColumns()), or null if
+     *         the sheet uses the standard layout
+     */
+    static int[] columnMap(String[] header, List<String> missing) {
+        return mapColumns(COL.values(), header, missing);
+    }
+
     /**
      * Create an object spreadsheet row representing a Movie avail
      * @param parent the parent sheet object
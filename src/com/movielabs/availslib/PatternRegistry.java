@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+package com.movielabs.availslib;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled regular expressions used to validate and normalize
+ * spreadsheet cells.  Compiling a Pattern is far more expensive than
+ * matching one, so each expression is compiled once here rather
+ * than on every row.  Pattern objects are immutable and may be
+ * shared between threads; callers create their own Matcher.
+ */
+final class PatternRegistry {
+
+    /** WorkType, with cleanup of case and whitespace */
+    static final Pattern WORK_TYPE =
+        Pattern.compile("^\\s*(movie|episode|season)\\s*$", Pattern.CASE_INSENSITIVE);
+
+    /** EntryType, with cleanup of case and whitespace */
+    static final Pattern DISPOSITION =
+        Pattern.compile("^\\s*full\\s+(extract|delete)\\s*$", Pattern.CASE_INSENSITIVE);
+
+    /** LicenseType controlled vocabulary */
+    static final Pattern LICENSE_TYPE = Pattern.compile("^\\s*EST|VOD|SVOD|POEST\\s*$");
+
+    /** EndCondition controlled vocabulary */
+    static final Pattern END_CONDITION = Pattern.compile("^\\s*Open|ESTStart|Immediate\\s*$");
+
+    /** FormatProfile controlled vocabulary */
+    static final Pattern FORMAT_PROFILE = Pattern.compile("^\\s*SD|HD|3D\\s*$");
+
+    /** PriceType controlled vocabulary */
+    static final Pattern PRICE_TYPE =
+        Pattern.compile("^\\s*(tier|category|wsp|srp)\\s*$", Pattern.CASE_INSENSITIVE);
+
+    /** TotalRunTime as hh:mm or hh:mm:ss */
+    static final Pattern RUN_LENGTH = Pattern.compile("^\\s*(\\d{1,2}):(\\d{1,2})(?::(\\d{1,2}))?\\s*$");
+
+    /** LocalizationType, with cleanup of case and whitespace */
+    static final Pattern LOCALIZATION_TYPE =
+        Pattern.compile("^\\s*(sub|dub|subdub|any)\\s*$", Pattern.CASE_INSENSITIVE);
+
+    /** RFC 5646 language tag; group 1 is the primary language subtag */
+    static final Pattern LANGUAGE_TAG = Pattern.compile("^([a-zA-Z]{2,3})(?:-[a-zA-Z0-9]+)*$");
+
+    /** Y, Yes, yes, yEs, etc. */
+    static final Pattern YES = Pattern.compile("^\\s*y(?:es)?\\s*$", Pattern.CASE_INSENSITIVE);
+
+    /** N, No, no, nO, etc. */
+    static final Pattern NO = Pattern.compile("^\\s*n(?:o)?\\s*$", Pattern.CASE_INSENSITIVE);
+
+    /** EIDR, with or without the 10.5240/ prefix; group 1 is the short form */
+    static final Pattern EIDR =
+        Pattern.compile("^\\s*(?:10\\.5240/)?((?:(?:\\p{XDigit}){4}-){5}\\p{XDigit})\\s*$");
+
+    /** 4-digit year, possibly formatted by Excel as a number */
+    static final Pattern YEAR = Pattern.compile("^\\s*(\\d{4})(?:\\.0)?\\s*$");
+
+    /** non-negative integer, possibly formatted by Excel as a number */
+    static final Pattern INT = Pattern.compile("^\\s*(\\d+)(?:\\.0)?\\s*$");
+
+    private PatternRegistry() {
+    }
+}
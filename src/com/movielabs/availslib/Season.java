@@ -24,6 +24,8 @@
  */
 
 package com.movielabs.availslib;
+import java.util.List;
+
 import org.w3c.dom.*;
 
 /**
@@ -133,18 +135,7 @@ public class Season extends SheetRow {
      */
     private void altIDHelper(Element metadata, COL col) throws Exception {
         if (!fields[col.ordinal()].equals("")) { // optional
-            Element altID = dom.createElement(col.toString());
-            Element cid = dom.createElement("md:Namespace");
-            Text tmp = dom.createTextNode(MISSING);
-            cid.appendChild(tmp);
-            altID.appendChild(cid);
-            altID.appendChild(mGenericElement("md:Identifier", 
-                                              fields[col.ordinal()], false));
-            Element loc = dom.createElement("md:Location");
-            tmp = dom.createTextNode(MISSING);
-            loc.appendChild(tmp);
-            altID.appendChild(loc);
-            metadata.appendChild(altID);
+            metadata.appendChild(mAltIdentifier(col.toString(), fields[col.ordinal()]));
         }
     }
 
@@ -185,12 +176,9 @@ public class Season extends SheetRow {
 
         // ReleaseYear ---> ReleaseDate
         if (!fields[COL.ReleaseYear.ordinal()].equals("")) { // optional
-            String year = normalizeYear(fields[COL.ReleaseYear.ordinal()]);
-            if (year == null) {
-                reportError("Invalid ReleaseYear: " + fields[COL.ReleaseYear.ordinal()]);
-            } else {
+            String year = checkYear(fields[COL.ReleaseYear.ordinal()]);
+            if (year != null)
                 fields[COL.ReleaseYear.ordinal()] = year;
-            }
             seasonMetadata.appendChild(mGenericElement(COL.ReleaseYear.toString(), 
                                                  fields[COL.ReleaseYear.ordinal()], false));
         }
@@ -368,7 +356,7 @@ public class Season extends SheetRow {
         if ((e = mPublisher("ServiceProvider", fields[COL.ServiceProvider.ordinal()], false)) != null)
             avail.appendChild(e);
         // AvailType ('season' for an Season)
-        avail.appendChild(mGenericElement("AvailType", "season", true));
+        avail.appendChild(fragments().text("AvailType", "season"));
 
         // ShortDescription
         // XXX Doc says optional, schema says mandatory
@@ -390,6 +378,63 @@ public class Season extends SheetRow {
         return avail;
     }
 
+    /**
+     * Apply the same rules as makeAvail() without creating any XML;
+     * called from superclass
+     */
+    protected void validateAvail() throws Exception {
+        String val;
+
+        // Avail
+        checkDisposition(fields[COL.EntryType.ordinal()]);
+        checkPublisher(fields[COL.DisplayName.ordinal()], true);
+        checkPublisher(fields[COL.ServiceProvider.ordinal()], false);
+        checkRequired("ShortDescription", shortDesc);
+
+        // Asset: Season
+        checkRequired(COL.SeasonTitleInternalAlias.toString(),
+                      fields[COL.SeasonTitleInternalAlias.ordinal()]);
+        checkCount(COL.SeasonNumber.toString(), fields[COL.SeasonNumber.ordinal()]);
+        if (!fields[COL.ReleaseYear.ordinal()].equals(""))
+            checkYear(fields[COL.ReleaseYear.ordinal()]);
+        if (!(val = fields[COL.EpisodeCount.ordinal()]).equals(""))
+            checkInt(COL.EpisodeCount.toString(), val);
+
+        // Asset: Series
+        checkRequired(COL.SeriesTitleInternalAlias.toString(),
+                      fields[COL.SeriesTitleInternalAlias.ordinal()]);
+        if (!(val = fields[COL.SeasonCount.ordinal()]).equals(""))
+            checkInt(COL.SeasonCount.toString(), val);
+
+        // Transaction
+        checkLicenseType(fields[COL.LicenseType.ordinal()]);
+        checkTerritory(fields[COL.Territory.ordinal()]);
+        checkStart(fields[COL.Start.ordinal()]);
+        checkEnd(fields[COL.End.ordinal()]);
+        checkStoreLanguage(fields[COL.StoreLanguage.ordinal()]);
+        checkLicenseRightsDescription(fields[COL.LicenseRightsDescription.ordinal()]);
+        checkFormatProfile(fields[COL.FormatProfile.ordinal()]);
+        checkPriceType(fields[COL.PriceType.ordinal()]);
+        if (!(val = fields[COL.RentalDuration.ordinal()]).equals(""))
+            checkDuration(val);
+        if (!(val = fields[COL.WatchDuration.ordinal()]).equals(""))
+            checkDuration(val);
+
+        // Exception Flag
+        checkExceptionFlag(fields[COL.ExceptionFlag.ordinal()]);
+    } /* validateAvail() */
+
+    /**
+     * Resolve this class's columns against a sheet's header row
+     * @param header the cell values of the header row
+     * @param missing if not null, the names of columns not found are added to it
+     * @return the column map (see SheetRow.mapColumns()), or null if
+     *         the sheet uses the standard layout
+     */
+    static int[] columnMap(String[] header, List<String> missing) {
+        return mapColumns(COL.values(), header, missing);
+    }
+
     /**
      * Create an object spreadsheet row representing a TV Season avail
      * @param parent the parent sheet object
@@ -29,7 +29,6 @@ import java.text.ParseException;
 import java.lang.NumberFormatException;
 
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.w3c.dom.*;
 import org.apache.logging.log4j.*;
@@ -49,6 +48,9 @@ public abstract class SheetRow {
     protected boolean cleanupData;
     protected String workType;
     protected String shortDesc;
+    protected ValidationReport report; // non-null only during validate()
+    protected DiagnosticsSink sink;
+    private FragmentCache fragments; // templates for the current dom
     protected static final String[] ISO3166  = Locale.getISOCountries();
     protected static final String[] ISO639   = Locale.getISOLanguages();
     
@@ -86,6 +88,7 @@ public abstract class SheetRow {
         this.log = getLogger();
         this.exitOnError = parent.getAvailSS().getExitOnError();
         this.cleanupData = parent.getAvailSS().getCleanupData();
+        this.sink = parent.getAvailSS().getDiagnosticsSink();
         shortDesc = ""; // default
     }
 
@@ -121,15 +124,25 @@ public abstract class SheetRow {
     protected Element mGenericElement(String name, String val, boolean mandatory) throws Exception {
         if (val.equals("")) {
             if (mandatory)
-                reportError("missing required value on element: " + name);
+                checkRequired(name, val);
             else
                 return null;
         }
+        return mTextElement(name, val);
+    } 
+
+    /**
+     * Create an XML element containing text, without any validation
+     * @param name the name of the element
+     * @param val the value of the element
+     * @return the created element
+     */
+    protected Element mTextElement(String name, String val) {
         Element tia = dom.createElement(name);
         Text tmp = dom.createTextNode(val);
         tia.appendChild(tmp);
         return tia;
-    } 
+    }
 
     /* **************************************
      * Node-generating methods
@@ -138,9 +151,9 @@ public abstract class SheetRow {
     protected Element mReleaseHistory(String name, String val, String rType) throws Exception {
         Element rh = null;
         if (!val.equals("")) { // optional
-            String date = normalizeDate(val);
-            if (date == null)
-                reportError("Invalid " + name + ": " + val);
+            String date = checkReleaseHistory(name, val);
+            if (date != null)
+                val = date;
             rh = dom.createElement("ReleaseHistory");
             Element rt = dom.createElement("md:ReleaseType");
             Text tmp = dom.createTextNode(rType);
@@ -156,8 +169,7 @@ public abstract class SheetRow {
         Element e;
         if ((e = mCaptionsExemptionReason(capIncluded, capExemption, territory)) != null) {
             if (!territory.equals("US")) {
-                Comment comment = dom.createComment("Exemption reason specified for non-US territory");
-                m.appendChild(comment);
+                m.appendChild(fragments().comment("Exemption reason specified for non-US territory"));
             }
             m.appendChild(e);
         }
@@ -167,31 +179,24 @@ public abstract class SheetRow {
                             String territory)
         throws Exception {
        // RatingSystem ---> Ratings
-        if (ratingSystem.equals("")) { // optional
-            if (!(ratingValue.equals("") && ratingReason.equals("")))
-                reportError("RatingSystem not specified");
-            else
-            	return;
-        }
-        if (!isValidISO3166_2(territory)) // validate legit ISO 3166-1 alpha-2
-            reportError("invalid Country Code: " + territory);
+        if (!checkRatings(ratingSystem, ratingValue, ratingReason, territory))
+            return;
         Element ratings = dom.createElement("Ratings");
         Element rat = dom.createElement("md:Rating");
         ratings.appendChild(rat);
-        Comment comment = dom.createComment("Ratings Region derived from Spreadsheet Territory value");
-        rat.appendChild(comment);
+        rat.appendChild(fragments().comment("Ratings Region derived from Spreadsheet Territory value"));
         Element region = dom.createElement("md:Region");
         Element country = dom.createElement("md:country");
         region.appendChild(country);
         Text tmp = dom.createTextNode(territory);
         country.appendChild(tmp);
         rat.appendChild(region);
-        rat.appendChild(mGenericElement("md:System", ratingSystem, true));
-        rat.appendChild(mGenericElement("md:Value", ratingValue, true));
+        rat.appendChild(mTextElement("md:System", ratingSystem));
+        rat.appendChild(mTextElement("md:Value", ratingValue));
         if (!ratingReason.equals("")) {
             String[] reasons = ratingReason.split(",");
             for (String s: reasons) {
-                Element reason = mGenericElement("md:Reason", s, true);
+                Element reason = mTextElement("md:Reason", s);
                     rat.appendChild(reason);
             }
         }
@@ -200,7 +205,7 @@ public abstract class SheetRow {
 
     protected Element mCount(String name, String val) throws Exception {
         if (val.equals(""))
-            reportError("missing required count value on element: " + name);
+            reportError(ErrorCode.MISSING_COUNT, name, val);
         Element tia = dom.createElement(name);
         Element e = dom.createElement("md:Number");
         int n = normalizeInt(val);
@@ -234,29 +239,11 @@ public abstract class SheetRow {
      */
     protected Element mDisposition(String entryType) throws Exception {
         Comment comment = null;
-        boolean err = false;
-
-        if (!(entryType.equals("Full Extract") || entryType.equals("Full Delete"))) {
-            if (cleanupData) {
-                Pattern pat = Pattern.compile("^\\s*full\\s+(extract|delete)\\s*$", Pattern.CASE_INSENSITIVE);
-                Matcher m = pat.matcher(entryType);
-                if (m.matches()) {
-                    comment = dom.createComment("corrected from '" + entryType + "'");
-                    if (m.group(1).equalsIgnoreCase("extract"))
-                        entryType = "Full Extract";
-                    else if (m.group(1).equalsIgnoreCase("delete"))
-                        entryType = "Full Delete";
-                    else
-                        err = true;
-                } else {
-                    err = true;
-                }
-            } else {
-                err = true;
-            }
+        String corrected = checkDisposition(entryType);
+        if (!corrected.equals(entryType)) {
+            comment = dom.createComment("corrected from '" + entryType + "'");
+            entryType = corrected;
         }
-        if (err)
-            reportError("invalid Disposition: " + entryType);
         Element disp = dom.createElement("Disposition");
         Element entry = dom.createElement("EntryType");
         Text tmp = dom.createTextNode(entryType);
@@ -278,28 +265,45 @@ public abstract class SheetRow {
      * @throws Exception other error conditions may also throw exceptions
      */
     protected Element mPublisher(String name, String displayName, boolean mandatory) throws Exception {
-        if (displayName.equals("")) {
-            if (mandatory)
-                reportError("missing md:DisplayName");
-            else
-                return null;
-        }
+        if (!checkPublisher(displayName, mandatory))
+            return null;
         Element licensor = dom.createElement(name);
         Element e = dom.createElement("md:DisplayName");
         Text tmp = dom.createTextNode(displayName);
         e.appendChild(tmp);
         licensor.appendChild(e);
         // XXX ContactInfo mandatory but can't get this info from the spreadsheet
-        e = dom.createElement("mdmec:ContactInfo");
-        Element e2 = dom.createElement("md:Name");
-        e.appendChild(e2);
-        e2 = dom.createElement("md:PrimaryEmail");
-        e.appendChild(e2);
-        licensor.appendChild(e);
+        licensor.appendChild(fragments().contactInfo());
 
         return licensor;
     }
 
+    /**
+     * Create an alternate identifier element; the namespace and
+     * location can't be taken from the spreadsheet, so are MISSING
+     * @param name the name of the element, e.g. AltIdentifier
+     * @param id the identifier
+     * @return the created element
+     */
+    protected Element mAltIdentifier(String name, String id) {
+        FragmentCache fc = fragments();
+        Element altID = dom.createElement(name);
+        altID.appendChild(fc.text("md:Namespace", MISSING));
+        altID.appendChild(mTextElement("md:Identifier", id));
+        altID.appendChild(fc.text("md:Location", MISSING));
+        return altID;
+    }
+
+    /**
+     * Get the constant fragments for the document being built
+     * @return the cache for dom
+     */
+    protected FragmentCache fragments() {
+        if (fragments == null || fragments.getDocument() != dom)
+            fragments = FragmentCache.get(dom);
+        return fragments;
+    }
+
     protected abstract Element mAssetBody(Element asset) throws Exception;
 
     protected Element mAssetHeader() throws Exception {
@@ -321,8 +325,7 @@ public abstract class SheetRow {
     // ------------------------ Transaction-related methods
 
     protected Element mLicenseType(String val) throws Exception {
-        if (!val.matches("^\\s*EST|VOD|SVOD|POEST\\s*$"))
-            reportError("invalid LicenseType: " + val);
+        checkLicenseType(val);
         Element e = dom.createElement("LicenseType");
         Text tmp = dom.createTextNode(val);
         e.appendChild(tmp);
@@ -330,10 +333,9 @@ public abstract class SheetRow {
     }
 
     protected Element mTerritory(String val) throws Exception {
-        if (!isValidISO3166_2(val)) // validate legit ISO 3166-1 alpha-2
-            reportError("invalid Country Code: " + val);
+        checkTerritory(val);
         Element e = dom.createElement("Territory");
-        Element e2 = mGenericElement("md:country", val, true);
+        Element e2 = mTextElement("md:country", val);
         e.appendChild(e2);
         return e;
     }
@@ -355,14 +357,8 @@ public abstract class SheetRow {
      */
     protected Element mStart(String val) throws Exception {
         Element e = null;
-        if (val.equals("")) {
-            reportError("Missing Start date: ");
-            // e = dom.createElement("StartCondition");
-            // tmp = dom.createTextNode("Immediate");
-        } else {
-            String date = normalizeDate(val);
-            if (date == null)
-                reportError("Invalid Start date: " + val);
+        String date = checkStart(val);
+        if (!val.equals("")) {
             e = dom.createElement("Start");  //[sic] yes name
             Text tmp = dom.createTextNode(date + "T00:00:00");
             e.appendChild(tmp);
@@ -374,34 +370,27 @@ public abstract class SheetRow {
     protected Element mEnd(String val) throws Exception {
         Element e = null;
         Text tmp;
-        if (val.equals(""))
-            reportError("End date may not be null");
-
-        String date = normalizeDate(val);
+        String date = checkEnd(val);
         if (date != null) {
             e = dom.createElement("End");
             tmp = dom.createTextNode(date + "T00:00:00");
             e.appendChild(tmp);
-        } else if (val.matches("^\\s*Open|ESTStart|Immediate\\s*$")) {
+        } else if (PatternRegistry.END_CONDITION.matcher(val).matches()) {
             e = dom.createElement("EndCondition");
             tmp = dom.createTextNode(val);
             e.appendChild(tmp);
-        } else {
-            reportError("Invalid End Condition " + val);
         }
         return e;
     }
 
     protected Element mStoreLanguage(String val) throws Exception {
-        if (!isValidLanguageTag(val)) // RFC 5646/BCP 47 validation
-            reportError("invalid language tag: '" + val + "'");
+        checkStoreLanguage(val);
         return mGenericElement("StoreLanguage", val, false);
     }
 
     // XXX cleanupData code not added
     protected Element mLicenseRightsDescription(String val) throws Exception {
-        if (Arrays.binarySearch(LRD, val) == -1)
-            reportError("invalid LicenseRightsDescription " + val);
+        checkLicenseRightsDescription(val);
         Element e = dom.createElement("LicenseRightsDescription");
         Text tmp = dom.createTextNode(val);
         e.appendChild(tmp);
@@ -410,8 +399,7 @@ public abstract class SheetRow {
 
     // XXX cleanupData code not added
     protected Element mFormatProfile(String val) throws Exception {
-        if (!val.matches("^\\s*SD|HD|3D\\s*$"))
-            reportError("invalid FormatProfile: " + val);
+        checkFormatProfile(val);
         Element e = dom.createElement("FormatProfile");
         Text tmp = dom.createTextNode(val);
         e.appendChild(tmp);
@@ -421,11 +409,7 @@ public abstract class SheetRow {
     // XXX cleanupData code not added
     protected Element mPriceType(String priceType, String priceVal) throws Exception {
         Element e = null;
-        priceType = priceType.toLowerCase();
-        Pattern pat = Pattern.compile("^\\s*(tier|category|wsp|srp)\\s*$", Pattern.CASE_INSENSITIVE);
-        Matcher m = pat.matcher(priceType);
-        if (!m.matches())
-            reportError("Invalid PriceType: " + priceType);
+        priceType = checkPriceType(priceType);
         switch(priceType) {
         case "tier":
         case "category":
@@ -453,13 +437,9 @@ public abstract class SheetRow {
     }
 
     protected Element makeDurationTerm(String name, String value) throws Exception {
-        int hours;
-        try {
-            hours = normalizeInt(value);
-        } catch(NumberFormatException e) {
-            reportError(" invalid duration: " + value);
+        int hours = checkDuration(value);
+        if (hours < 0)
             return null;
-        }
         value = String.format("PT%dH", hours);
             
         Element e = dom.createElement("Term");   
@@ -476,9 +456,7 @@ public abstract class SheetRow {
     }
 
     protected Element makeLanguageTerm(String name, String value) throws Exception {
-        // XXX validate
-        if (!isValidLanguageTag(value))
-            reportError("Suspicious Language Tag: " + value);
+        checkLanguageTerm(value);
         Element e = dom.createElement("Term");   
         Attr attr = dom.createAttribute("termName");
         attr.setValue(name);
@@ -527,31 +505,16 @@ public abstract class SheetRow {
     // ------------------
 
     protected Element mRunLength(String val) throws Exception {
-        Element ret = dom.createElement("RunLength");
-        Text tmp = null;
+        String d;
         if (val.equals("")) { // XXX ugly hack
-            tmp = dom.createTextNode("PT0H");
+            d = "PT0H";
         } else {
-            Pattern dur = Pattern.compile("^\\s*(\\d{1,2}):(\\d{1,2})(?::(\\d{1,2}))?\\s*$");
-            Matcher m = dur.matcher(val);
-            if (m.matches()) {
-                int hour, min, sec;
-                try {
-                    hour = normalizeInt(m.group(1));
-                    min = normalizeInt(m.group(2));
-                    sec = normalizeInt(m.group(3));
-                } catch(NumberFormatException s) {
-                    hour = min = sec = 60;
-                }
-                if (min > 59 || sec > 59)
-                    reportError("invalid duration string " + val);
-                String d =  String.format("PT%dH%dM%dS", hour, min, sec);
-                tmp = dom.createTextNode(d);
-            } else {
-                reportError("invalid duration string (verify Excel cell format is 'Text'): " + val);
-                ret = null;
-            }
+            d = checkRunLength(val);
+            if (d == null)
+                return null;
         }
+        Element ret = dom.createElement("RunLength");
+        Text tmp = dom.createTextNode(d);
         ret.appendChild(tmp);
         return ret;
     }
@@ -559,33 +522,397 @@ public abstract class SheetRow {
     protected Element mLocalizationType(Element parent, String loc) throws Exception {
         if (loc.equals(""))
             return null;
-        if (!(loc.equals("sub") || loc.equals("dub") || loc.equals("subdub") || loc.equals("any"))) {
+        String corrected = checkLocalizationType(loc);
+        if (!corrected.equals(loc)) {
+            Comment comment = dom.createComment("corrected from '" + loc + "'");
+            loc = corrected;
+            parent.appendChild(comment);
+        }
+        return mGenericElement("LocalizationOffering", loc, false);
+    }
+
+    protected Element mCaptionsExemptionReason(String captionIncluded, String captionExemption,
+                                               String territory) throws Exception {
+        Integer exemption = checkCaptionsExemption(captionIncluded, captionExemption);
+        if (exemption == null)
+            return null;
+        Element capex = dom.createElement("USACaptionsExemptionReason");
+        Text tmp = dom.createTextNode(Integer.toString(exemption));
+        capex.appendChild(tmp);
+        return capex;
+    }
+
+
+    /**
+     * Create an Avails ExceptionFlag element
+     * @param exceptionFlag a string indicating whether the flag is to be set.  It should be "Yes" or "No",
+     *        but several case and whitespace variants will be tolerated.
+     * @return the created ExceptionFlag element, or null if there is an error
+     * @throws ParseException if the supplied value can't be mapped to
+     * a boolean and abort-on-error policy is in effect
+     */
+    protected Element mExceptionFlag(String exceptionFlag) throws Exception {
+        if (!checkExceptionFlag(exceptionFlag))
+            return null;
+        Element eFlag = dom.createElement("ExceptionFlag");
+        Text tmp = dom.createTextNode("true");
+        eFlag.appendChild(tmp);
+        return eFlag;
+    }
+
+
+    /* **************************************
+     * Validation methods
+     *
+     * Each applies the rules for one field (or group of related
+     * fields), reporting any problems through reportError().  They
+     * create no XML, so they are shared by the node-generating
+     * methods and by validate().
+     ****************************************/
+
+    /**
+     * Validate this row without generating any XML.  Every rule that
+     * makeAvail() would apply is checked, and each problem found is
+     * added to the report.
+     * @param report where problems are recorded
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    public void validate(ValidationReport report) throws Exception {
+        validate(report, false);
+    }
+
+    /**
+     * Validate this row without generating any XML
+     * @param report where problems are recorded
+     * @param collectAll if true, the exit-on-error policy is ignored so
+     *        that every problem in the row is recorded
+     * @throws ParseException if there is an error, collectAll is false
+     *         and abort-on-error policy is in effect
+     */
+    public void validate(ValidationReport report, boolean collectAll) throws Exception {
+        boolean saved = exitOnError;
+        this.report = report;
+        if (collectAll)
+            exitOnError = false;
+        try {
+            validateAvail();
+        } finally {
+            this.report = null;
+            exitOnError = saved;
+        }
+    }
+
+    /**
+     * Apply every validation rule for this type of avail, in the same
+     * order as makeAvail(); called from validate()
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected abstract void validateAvail() throws Exception;
+
+    /**
+     * Report a missing value for a mandatory element
+     * @param name the name of the element
+     * @param val the value of the element
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected void checkRequired(String name, String val) throws Exception {
+        if (val.equals(""))
+            reportError(ErrorCode.MISSING_VALUE, name, val);
+    }
+
+    /**
+     * Validate a ReleaseHistory date
+     * @param name the element the date is held in
+     * @param val the value from the spreadsheet
+     * @return the normalized date, or null if it is invalid
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected String checkReleaseHistory(String name, String val) throws Exception {
+        String date = normalizeDate(val);
+        if (date == null)
+            reportError(ErrorCode.INVALID_DATE, name, val);
+        return date;
+    }
+
+    /**
+     * Validate the rating columns of a row
+     * @return false if no ratings were specified, and so no Ratings element is needed
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected boolean checkRatings(String ratingSystem, String ratingValue, String ratingReason,
+                                   String territory) throws Exception {
+        if (ratingSystem.equals("")) { // optional
+            if (!(ratingValue.equals("") && ratingReason.equals("")))
+                reportError(ErrorCode.MISSING_RATING_SYSTEM, "RatingSystem", ratingSystem);
+            else
+                return false;
+        }
+        if (!isValidISO3166_2(territory)) // validate legit ISO 3166-1 alpha-2
+            reportError(ErrorCode.INVALID_COUNTRY, "Territory", territory);
+        checkRequired("md:System", ratingSystem);
+        checkRequired("md:Value", ratingValue);
+        if (!ratingReason.equals("")) {
+            for (String s: ratingReason.split(","))
+                checkRequired("md:Reason", s);
+        }
+        return true;
+    }
+
+    /**
+     * Validate a mandatory count (e.g. SeasonNumber)
+     * @param name the element the count is held in
+     * @param val the count
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected void checkCount(String name, String val) throws Exception {
+        if (val.equals(""))
+            reportError(ErrorCode.MISSING_COUNT, name, val);
+        else
+            checkInt(name, val);
+    }
+
+    /**
+     * Validate an integer value
+     * @param name the element the value is held in
+     * @param val the value
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected void checkInt(String name, String val) throws Exception {
+        try {
+            normalizeInt(val);
+        } catch(NumberFormatException e) {
+            reportError(ErrorCode.INVALID_INTEGER, name, val);
+        }
+    }
+
+    /**
+     * Validate an EntryType
+     * @param entryType the value from the spreadsheet
+     * @return the value to be used, which differs from entryType if it has been cleaned up
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected String checkDisposition(String entryType) throws Exception {
+        boolean err = false;
+
+        if (!(entryType.equals("Full Extract") || entryType.equals("Full Delete"))) {
             if (cleanupData) {
-                Pattern pat = Pattern.compile("^\\s*(sub|dub|subdub|any)\\s*$", Pattern.CASE_INSENSITIVE);
-                Matcher m = pat.matcher(loc);
+                Matcher m = PatternRegistry.DISPOSITION.matcher(entryType);
                 if (m.matches()) {
-                    Comment comment = dom.createComment("corrected from '" + loc + "'");
-                    loc = m.group(1).toLowerCase();
-                    parent.appendChild(comment);
+                    if (m.group(1).equalsIgnoreCase("extract"))
+                        return "Full Extract";
+                    else if (m.group(1).equalsIgnoreCase("delete"))
+                        return "Full Delete";
+                    else
+                        err = true;
+                } else {
+                    err = true;
                 }
             } else {
-                reportError("invalid LocalizationOffering value: " + loc);
+                err = true;
             }
         }
-        return mGenericElement("LocalizationOffering", loc, false);
+        if (err)
+            reportError(ErrorCode.INVALID_DISPOSITION, "EntryType", entryType);
+        return entryType;
     }
 
-    protected Element mCaptionsExemptionReason(String captionIncluded, String captionExemption,
-                                               String territory) throws Exception {
+    /**
+     * Validate a Licensor or ServiceProvider DisplayName
+     * @param displayName the name
+     * @param mandatory if true, an empty name is an error
+     * @return false if the name is empty and optional, and so no element is needed
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected boolean checkPublisher(String displayName, boolean mandatory) throws Exception {
+        if (displayName.equals("")) {
+            if (mandatory)
+                reportError(ErrorCode.MISSING_DISPLAY_NAME, "DisplayName", displayName);
+            else
+                return false;
+        }
+        return true;
+    }
+
+    protected void checkLicenseType(String val) throws Exception {
+        if (!PatternRegistry.LICENSE_TYPE.matcher(val).matches())
+            reportError(ErrorCode.INVALID_LICENSE_TYPE, "LicenseType", val);
+    }
+
+    protected void checkTerritory(String val) throws Exception {
+        if (!isValidISO3166_2(val)) // validate legit ISO 3166-1 alpha-2
+            reportError(ErrorCode.INVALID_COUNTRY, "Territory", val);
+        checkRequired("md:country", val);
+    }
+
+    /**
+     * Validate a Start date
+     * @param val the value from the spreadsheet
+     * @return the normalized date, or null if it is missing or invalid
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected String checkStart(String val) throws Exception {
+        if (val.equals("")) {
+            reportError(ErrorCode.MISSING_START, "Start", val);
+            return null;
+        }
+        String date = normalizeDate(val);
+        if (date == null)
+            reportError(ErrorCode.INVALID_START, "Start", val);
+        return date;
+    }
+
+    /**
+     * Validate an End date or EndCondition
+     * @param val the value from the spreadsheet
+     * @return the normalized date, or null if val is not a date
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected String checkEnd(String val) throws Exception {
+        if (val.equals(""))
+            reportError(ErrorCode.MISSING_END, "End", val);
+
+        String date = normalizeDate(val);
+        if (date == null && !PatternRegistry.END_CONDITION.matcher(val).matches())
+            reportError(ErrorCode.INVALID_END, "End", val);
+        return date;
+    }
+
+    protected void checkStoreLanguage(String val) throws Exception {
+        if (!isValidLanguageTag(val)) // RFC 5646/BCP 47 validation
+            reportError(ErrorCode.INVALID_LANGUAGE, "StoreLanguage", val);
+    }
+
+    protected void checkLicenseRightsDescription(String val) throws Exception {
+        if (Arrays.binarySearch(LRD, val) == -1)
+            reportError(ErrorCode.INVALID_LRD, "LicenseRightsDescription", val);
+    }
+
+    protected void checkFormatProfile(String val) throws Exception {
+        if (!PatternRegistry.FORMAT_PROFILE.matcher(val).matches())
+            reportError(ErrorCode.INVALID_FORMAT_PROFILE, "FormatProfile", val);
+    }
+
+    /**
+     * Validate a PriceType
+     * @param priceType the value from the spreadsheet
+     * @return the price type in lower case
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected String checkPriceType(String priceType) throws Exception {
+        priceType = priceType.toLowerCase();
+        if (!PatternRegistry.PRICE_TYPE.matcher(priceType).matches())
+            reportError(ErrorCode.INVALID_PRICE_TYPE, "PriceType", priceType);
+        return priceType;
+    }
+
+    /**
+     * Validate a duration expressed in hours
+     * @param value the value from the spreadsheet
+     * @return the number of hours, or -1 if invalid
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected int checkDuration(String value) throws Exception {
+        try {
+            return normalizeInt(value);
+        } catch(NumberFormatException e) {
+            reportError(ErrorCode.INVALID_DURATION, null, value);
+            return -1;
+        }
+    }
+
+    protected void checkLanguageTerm(String value) throws Exception {
+        // XXX validate
+        if (!isValidLanguageTag(value))
+            reportError(ErrorCode.SUSPICIOUS_LANGUAGE, null, value);
+    }
+
+    /**
+     * Validate an optional EIDR (e.g. ProductID)
+     * @param name the column name, used in error messages
+     * @param val the value from the spreadsheet
+     * @return the short form of the EIDR, or null if it is invalid
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected String checkEIDR(String name, String val) throws Exception {
+        String eidr = normalizeEIDR(val);
+        if (eidr == null)
+            reportError(ErrorCode.INVALID_EIDR, name, val);
+        return eidr;
+    }
+
+    /**
+     * Validate a ReleaseYear
+     * @param val the value from the spreadsheet
+     * @return a 4-digit year, or null if it is invalid
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected String checkYear(String val) throws Exception {
+        String year = normalizeYear(val);
+        if (year == null)
+            reportError(ErrorCode.INVALID_YEAR, "ReleaseYear", val);
+        return year;
+    }
+
+    /**
+     * Validate a TotalRunTime
+     * @param val the value from the spreadsheet, hh:mm or hh:mm:ss
+     * @return the corresponding xs:duration, or null if val is not a duration
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected String checkRunLength(String val) throws Exception {
+        Matcher m = PatternRegistry.RUN_LENGTH.matcher(val);
+        if (!m.matches()) {
+            reportError(ErrorCode.RUN_LENGTH_FORMAT, "TotalRunTime", val);
+            return null;
+        }
+        int hour, min, sec;
+        try {
+            hour = normalizeInt(m.group(1));
+            min = normalizeInt(m.group(2));
+            sec = normalizeInt(m.group(3));
+        } catch(NumberFormatException s) {
+            hour = min = sec = 60;
+        }
+        if (min > 59 || sec > 59)
+            reportError(ErrorCode.INVALID_RUN_LENGTH, "TotalRunTime", val);
+        return String.format("PT%dH%dM%dS", hour, min, sec);
+    }
+
+    /**
+     * Validate a LocalizationType
+     * @param loc the (non-empty) value from the spreadsheet
+     * @return the value to be used, which differs from loc if it has been cleaned up
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected String checkLocalizationType(String loc) throws Exception {
+        if (!(loc.equals("sub") || loc.equals("dub") || loc.equals("subdub") || loc.equals("any"))) {
+            if (cleanupData) {
+                Matcher m = PatternRegistry.LOCALIZATION_TYPE.matcher(loc);
+                if (m.matches())
+                    return m.group(1).toLowerCase();
+            } else {
+                reportError(ErrorCode.INVALID_LOCALIZATION, "LocalizationType", loc);
+            }
+        }
+        return loc;
+    }
+
+    /**
+     * Validate the CaptionIncluded and CaptionExemption columns
+     * @return the exemption reason to be emitted, or null if none
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
+     */
+    protected Integer checkCaptionsExemption(String captionIncluded, String captionExemption)
+        throws Exception {
         int exemption = 0;
         switch(yesorno(captionIncluded)) {
         case 1: // yes, caption is included
             if (!captionExemption.equals(""))
-                reportError("CaptionExemption specified without CaptionIncluded");
+                reportError(ErrorCode.UNEXPECTED_CAPTION_EXEMPTION, "CaptionExemption", captionExemption);
             break;
         case 0: // no, captions not included
             if (captionExemption.equals("")) {
-                reportError("Captions not included and CaptionExemption not specified");
+                reportError(ErrorCode.MISSING_CAPTION_EXEMPTION, "CaptionExemption", captionExemption);
                 return null;
             } else {
                 try {
@@ -594,15 +921,12 @@ public abstract class SheetRow {
                     exemption = -1;
                 }
                 if (exemption < 1 || exemption > 6)
-                    reportError("Invalid CaptionExamption Value: " + exemption);
-                Element capex = dom.createElement("USACaptionsExemptionReason");
-                Text tmp = dom.createTextNode(Integer.toString(exemption));
-                capex.appendChild(tmp);
-                return capex;
+                    reportError(ErrorCode.INVALID_CAPTION_EXEMPTION, "CaptionExemption", captionExemption);
+                return exemption;
             }
             // break
         default:
-            reportError("CaptionExemption specified without CaptionIncluded");
+            reportError(ErrorCode.UNEXPECTED_CAPTION_EXEMPTION, "CaptionExemption", captionExemption);
         }
         // } else {
         // if (captionIncluded.equals("") && captionExemption.equals(""))
@@ -613,31 +937,24 @@ public abstract class SheetRow {
         return null;
     }
 
-
     /**
-     * Create an Avails ExceptionFlag element
-     * @param exceptionFlag a string indicating whether the flag is to be set.  It should be "Yes" or "No",
-     *        but several case and whitespace variants will be tolerated.
-     * @return the created ExceptionFlag element, or null if there is an error
-     * @throws ParseException if the supplied value can't be mapped to
-     * a boolean and abort-on-error policy is in effect
+     * Validate an ExceptionFlag
+     * @param exceptionFlag "Yes" or "No", or a case/whitespace variant
+     * @return true iff the flag is set
+     * @throws ParseException if there is an error and abort-on-error policy is in effect
      */
-    protected Element mExceptionFlag(String exceptionFlag) throws Exception {
+    protected boolean checkExceptionFlag(String exceptionFlag) throws Exception {
         switch(yesorno(exceptionFlag)) {
         case 0:
-            return null;
+            return false;
         case 1:
-            Element eFlag = dom.createElement("ExceptionFlag");
-            Text tmp = dom.createTextNode("true");
-            eFlag.appendChild(tmp);
-            return eFlag;
+            return true;
         default:
-            reportError("invalid ExceptionFlag");
-            return null;
+            reportError(ErrorCode.INVALID_EXCEPTION_FLAG, "ExceptionFlag", exceptionFlag);
+            return false;
         }
     }
 
-
     /* **************************************
      * Helper methods
      ****************************************/
@@ -648,12 +965,55 @@ public abstract class SheetRow {
      * @return true iff it is a valid code
      */
     protected boolean isValidISO639_2(String val) {
-        try {
-            /* ISO639_2_Code code = */ ISO639_2_Code.fromValue(val);
-        } catch (IllegalArgumentException e) {
-            return false;
+        return val != null && ISOCodes.isISO639_2(val, 0, val.length());
+    }
+
+    /**
+     * Resolve the columns of a row class against a sheet's header row.
+     * Columns are matched by name (ignoring case and surrounding
+     * whitespace); placeholder columns, whose XML name is empty, are
+     * not looked for.  A column whose name is not found (a typo, or a
+     * template's own spelling) is read from its standard position, as
+     * it would be without a header, unless that cell of the header is
+     * the one another column was found at.
+     * @param cols the row class's columns, in the order it expects them
+     * @param header the cell values of the sheet's header row
+     * @param missing if not null, the names of columns found neither by
+     *        name nor by position are added to it
+     * @return map[i] is the position in the sheet of column i, or -1 if
+     *         it is absent; null if every column is already where it is expected
+     */
+    protected static int[] mapColumns(Enum<?>[] cols, String[] header, List<String> missing) {
+        HashMap<String, Integer> index = new HashMap<String, Integer>();
+        for (int i=header.length-1; i>=0; i--) // first occurrence wins
+            if (header[i] != null)
+                index.put(header[i].trim().toLowerCase(), i);
+
+        int[] map = new int[cols.length];
+        boolean[] claimed = new boolean[header.length];
+        for (Enum<?> c : cols) {
+            Integer i = c.toString().equals("") ? null : index.get(c.name().toLowerCase());
+            map[c.ordinal()] = (i == null) ? -1 : i;
+            if (i != null)
+                claimed[i] = true;
         }
-        return true;
+
+        boolean identity = true;
+        for (Enum<?> c : cols) {
+            int i = c.ordinal();
+            boolean placeholder = c.toString().equals("");
+            if (map[i] < 0) { // not found by name: fall back to position
+                if (i < header.length && !claimed[i])
+                    map[i] = i;
+                else if (placeholder)
+                    continue; // never read, so needn't break identity
+                else if (missing != null)
+                    missing.add(c.name());
+            }
+            if (map[i] != i)
+                identity = false;
+        }
+        return identity ? null : map;
     }
 
     /**
@@ -663,16 +1023,12 @@ public abstract class SheetRow {
      * @throws Exception 
      */
     protected boolean isValidLanguageTag(String val) throws Exception {
-        Pattern pat = Pattern.compile("^([a-zA-Z]{2,3})(?:-[a-zA-Z0-9]+)*$");
-        Matcher m = pat.matcher(val);
+        Matcher m = PatternRegistry.LANGUAGE_TAG.matcher(val);
         boolean ret = false;
-        if (m.matches()) {
-            String lang = m.group(1).toLowerCase();
-            ret = ((Arrays.binarySearch(ISO639, lang) >= 0) ||
-                   isValidISO639_2(lang));
-        }
+        if (m.matches()) // ISO 639-1 or 639-2, in any case
+            ret = ISOCodes.isLanguage(val, m.start(1), m.end(1));
         if (!ret)
-            reportError("Suspicious Language Tag: " + val);
+            reportError(ErrorCode.SUSPICIOUS_LANGUAGE, null, val);
         return ret;
     }
 
@@ -682,7 +1038,7 @@ public abstract class SheetRow {
      * @return true iff val is a valid code
      */
     protected boolean isValidISO3166_2(String val) {
-        return Arrays.binarySearch(ISO3166, val) != -1;
+        return ISOCodes.isCountry(val);
     }
 
     /**
@@ -693,10 +1049,26 @@ public abstract class SheetRow {
      * @throws ParseException if exit-on-error policy is in effect
      */
     protected void reportError(String s) throws Exception {
-        s = String.format("Row %5d: %s", rowNum, s);
-        log.warn(s);
+        reportError(ErrorCode.OTHER, null, s);
+    }
+
+    /**
+     * Report a problem with this row.  If a DiagnosticsSink is in use
+     * (or validate() is running) the problem is passed to it without
+     * being formatted; otherwise it is logged.
+     * @param code the kind of problem
+     * @param column the column or element concerned (may be null)
+     * @param raw the offending value (may be null)
+     * @throws ParseException if exit-on-error policy is in effect
+     */
+    protected void reportError(ErrorCode code, String column, String raw) throws Exception {
+        DiagnosticsSink s = (report != null) ? report : sink;
+        if (s != null)
+            s.report(parent.getName(), rowNum, column, code, raw);
+        else
+            log.warn(String.format("Row %5d: %s", rowNum, code.format(column, raw)));
         if (exitOnError)
-            throw new ParseException(s, 0);
+            throw new ParseException(String.format("Row %5d: %s", rowNum, code.format(column, raw)), 0);
     }
     
 
@@ -710,14 +1082,10 @@ public abstract class SheetRow {
     protected int yesorno(String s) {
         if (s.equals(""))
             return 0;
-        Pattern pat = Pattern.compile("^\\s*y(?:es)?\\s*$", Pattern.CASE_INSENSITIVE); // Y, Yes, yes, yEs, etc.
-        Matcher m = pat.matcher(s);
-        if (m.matches()) {
+        if (PatternRegistry.YES.matcher(s).matches()) { // Y, Yes, yes, yEs, etc.
             return 1;
         } else {
-            pat = Pattern.compile("^\\s*n(?:o)?\\s*$", Pattern.CASE_INSENSITIVE);  // N, No, no, nO, etc.
-            m = pat.matcher(s);
-            if (m.matches())
+            if (PatternRegistry.NO.matcher(s).matches()) // N, No, no, nO, etc.
                 return 0;
             else
                 return -1;
@@ -734,8 +1102,7 @@ public abstract class SheetRow {
      * if not a proper EIDR exception
      */
     protected String normalizeEIDR(String s) {
-        Pattern eidr = Pattern.compile("^\\s*(?:10\\.5240/)?((?:(?:\\p{XDigit}){4}-){5}\\p{XDigit})\\s*$");
-        Matcher m = eidr.matcher(s);
+        Matcher m = PatternRegistry.EIDR.matcher(s);
         if (m.matches()) {
             return m.group(1).toUpperCase();
         } else {
@@ -751,8 +1118,7 @@ public abstract class SheetRow {
      * @return a 4-digit year value represented as a string
      */
     protected String normalizeYear(String s) {
-        Pattern eidr = Pattern.compile("^\\s*(\\d{4})(?:\\.0)?\\s*$");
-        Matcher m = eidr.matcher(s);
+        Matcher m = PatternRegistry.YEAR.matcher(s);
         if (m.matches()) {
             return m.group(1);
         } else {
@@ -763,8 +1129,7 @@ public abstract class SheetRow {
     protected int normalizeInt(String s) throws Exception {
     	if (s == null)
             return 0;
-        Pattern eidr = Pattern.compile("^\\s*(\\d+)(?:\\.0)?\\s*$");
-        Matcher m = eidr.matcher(s);
+        Matcher m = PatternRegistry.INT.matcher(s);
         if (m.matches()) {
             return Integer.parseInt(m.group(1));
         } else {
@@ -772,60 +1137,15 @@ public abstract class SheetRow {
         }
     }
 
+    /**
+     * Verify that a string represents a valid date, either
+     * yyyy-mm-dd or dd-mmm-yyyy, and return it in yyyy-mm-dd form if
+     * so.  Leading and trailing whitespace is tolerated.
+     * @param s the input string to be tested
+     * @return the date as yyyy-mm-dd, or null if not a valid date
+     */
     protected String normalizeDate(String s) {
-        final int[] dim = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
-        int year=-1, month=-1, day=-1;
-        Pattern date = Pattern.compile("^\\s*(\\d{4})-(\\d{1,2})-(\\d{1,2})\\s*$");
-        Matcher m = date.matcher(s);
-        if (m.matches()) { // try yyyy-mm-dd
-            year = Integer.parseInt(m.group(1));
-            month = Integer.parseInt(m.group(2));
-            day = Integer.parseInt(m.group(3));
-        } else { // try dd-mmm-yyyy
-            date = Pattern.compile("^\\s*(\\d{1,2})-(jan|feb|mar|apr|may|jun|jul|aug|sep|oct|nov|dec)-(\\d{4})\\s*$",
-                                   Pattern.CASE_INSENSITIVE);
-            m = date.matcher(s);
-            if (m.matches()) {
-                year = Integer.parseInt(m.group(3));
-                switch(m.group(2).toLowerCase()) {
-                case "jan": month =  1; break;
-                case "feb": month =  2; break;
-                case "mar": month =  3; break;
-                case "apr": month =  4; break;
-                case "may": month =  5; break;
-                case "jun": month =  6; break;
-                case "jul": month =  7; break;
-                case "aug": month =  8; break;
-                case "sep": month =  9; break;
-                case "oct": month = 10; break;
-                case "nov": month = 11; break;
-                case "dec": month = 12; break;
-                }
-                day = Integer.parseInt(m.group(1));
-            } else {
-                return null;
-            }
-        }
-        boolean badDate = year < 1850;
-        badDate |= month < 1 || month > 12;
-        badDate |= day < 1;
-        if (month == 2) {  // February
-            if ((year % 4) == 0) { // leap year: fails in year 2400
-                if ((year % 100) == 0) {
-                    badDate |= day > 28; // first-order exception to leap year rule
-                } else {
-                    badDate |= day > 29; // normal leap year
-                }
-            } else {
-                badDate |= day > dim[1]; // non-leap year
-            }
-        } else {
-            badDate |= day > dim[month-1];
-        }
-        if (badDate)
-            return null;
-        else
-            return String.format("%04d-%02d-%02d", year, month, day);
+        return DateParser.normalize(s);
     }
 
     protected abstract Element makeAvail(Document dom) throws Exception;
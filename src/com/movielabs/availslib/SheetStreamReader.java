@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+package com.movielabs.availslib;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+/**
+ * Reads the sheets of an Excel .xlsx file a row at a time using the
+ * Apache POI event model, so that a sheet never has to be held in
+ * memory as a whole.  Cell values are converted to strings the same
+ * way AvailSS does when it walks an in-memory workbook.
+ * <p>
+ * Once constructed, a reader may parse several sheets at the same
+ * time, each on its own thread, provided each sheet's stream is
+ * opened (by openSheet()) on one thread at a time.  All the shared
+ * state is then only read: the shared strings are an immutable list
+ * once ReadOnlySharedStringsTable has parsed them, and the cell styles
+ * are reduced to a table of flags here rather than consulted through
+ * POI's XMLBeans-backed style objects, which make no such promise.
+ * The sheet streams are separate entries of the package's ZipFile,
+ * which may be read concurrently.
+ */
+class SheetStreamReader {
+    private String file;
+    private OPCPackage pkg;
+    private XSSFReader reader;
+    private ReadOnlySharedStringsTable strings;
+    private boolean[] dateStyles; // by cell style index: true if a date format
+
+    /**
+     * Open an Excel spreadsheet for streaming
+     * @param file name of the Excel .xlsx spreadsheet
+     * @throws Exception if the file can't be opened or is not a valid .xlsx file
+     */
+    SheetStreamReader(String file) throws Exception {
+        this.file = file;
+        pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            reader = new XSSFReader(pkg);
+            strings = new ReadOnlySharedStringsTable(pkg);
+            dateStyles = findDateStyles(reader.getStylesTable());
+        } catch (Exception e) {
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    /**
+     * Find the cell styles that format numbers as dates, so that POI's
+     * style objects need not be consulted while sheets are read
+     * @param styles the workbook's styles, or null if it has none
+     * @return a flag for each cell style
+     */
+    private static boolean[] findDateStyles(StylesTable styles) {
+        if (styles == null)
+            return new boolean[0];
+        boolean[] ret = new boolean[styles.getNumCellStyles()];
+        for (int i=0; i<ret.length; i++) {
+            XSSFCellStyle cs = styles.getStyleAt(i);
+            ret[i] = (cs != null) && DateUtil.isADateFormat(cs.getDataFormat(), cs.getDataFormatString());
+        }
+        return ret;
+    }
+
+    /**
+     * Release the underlying package; the file is not modified
+     */
+    void close() {
+        pkg.revert();
+    }
+
+    /**
+     * Get the names of all sheets in the spreadsheet
+     * @return sheet names, in workbook order
+     * @throws Exception if the workbook part can't be read
+     */
+    List<String> getSheetNames() throws Exception {
+        ArrayList<String> names = new ArrayList<String>();
+        XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (it.hasNext()) {
+            it.next().close();
+            names.add(it.getSheetName());
+        }
+        return names;
+    }
+
+    /**
+     * Open the XML part of a sheet
+     * @param sheetName name of the sheet
+     * @return a stream of the sheet's XML
+     * @throws IllegalArgumentException if the sheet does not exist in the Excel spreadsheet
+     * @throws Exception other error conditions may also throw exceptions
+     */
+    InputStream openSheet(String sheetName) throws Exception {
+        XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (it.hasNext()) {
+            InputStream is = it.next();
+            if (it.getSheetName().equals(sheetName))
+                return is;
+            is.close();
+        }
+        throw new IllegalArgumentException(file + ":" + sheetName + " not found");
+    }
+
+    /**
+     * Open the XML part of a sheet
+     * @param sheetNumber zero-based index of the sheet
+     * @param names if not null, the sheet's name is stored in element 0
+     * @return a stream of the sheet's XML
+     * @throws IllegalArgumentException if the sheet does not exist in the Excel spreadsheet
+     * @throws Exception other error conditions may also throw exceptions
+     */
+    InputStream openSheet(int sheetNumber, String[] names) throws Exception {
+        XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+        int i = 0;
+        while (it.hasNext()) {
+            InputStream is = it.next();
+            if (i++ == sheetNumber) {
+                if (names != null)
+                    names[0] = it.getSheetName();
+                return is;
+            }
+            is.close();
+        }
+        throw new IllegalArgumentException(file + ": sheet number " + sheetNumber + " not found");
+    }
+
+    /**
+     * Receives each non-empty row of a sheet as it is read
+     */
+    interface RowHandler {
+        /**
+         * Process a row
+         * @param fields the cell values of the row, as strings
+         * @param rowNum the row number in the sheet (1-based)
+         * @throws Exception to abandon reading the sheet
+         */
+        void handleRow(String[] fields, int rowNum) throws Exception;
+    }
+
+    /**
+     * Parse a sheet, passing every avail row to an AvailsSheet as it is read
+     * @param is the sheet's XML, as returned by openSheet(); it is closed on return
+     * @param as the sheet object to be populated
+     * @throws Exception if the sheet can't be parsed, or AvailsSheet rejects a row
+     */
+    void readSheet(InputStream is, final AvailsSheet as) throws Exception {
+        AvailSS ss = as.getAvailSS();
+        StringPool pool = new StringPool(ss.getStringPoolSize());
+        int rows = readSheet(is, new RowHandler() {
+                public void handleRow(String[] fields, int rowNum) throws Exception {
+                    if (!as.scanHeader(fields) && as.isAvail(fields))
+                        as.addRow(fields, rowNum);
+                }
+            }, pool);
+        LoadStatistics stats = new LoadStatistics(as.getName(), rows, pool);
+        as.setLoadStatistics(stats);
+        ss.getLogger().info(stats.toString());
+    }
+
+    /**
+     * Parse a sheet, passing every row to a handler as it is read;
+     * nothing is retained once the handler returns
+     * @param is the sheet's XML, as returned by openSheet(); it is closed on return
+     * @param handler receives each row
+     * @param pool repeated cell values are replaced by the instance held here
+     * @return the number of rows passed to the handler
+     * @throws InterruptedException if the thread is interrupted; this is
+     *         checked between rows
+     * @throws Exception if the sheet can't be parsed, or the handler throws
+     */
+    int readSheet(InputStream is, RowHandler handler, StringPool pool) throws Exception {
+        try {
+            SAXParserFactory spf = SAXParserFactory.newInstance();
+            spf.setNamespaceAware(true);
+            SAXParser parser = spf.newSAXParser();
+            SheetHandler sh = new SheetHandler(handler, pool);
+            parser.parse(new InputSource(is), sh);
+            return sh.rowCount;
+        } catch (SAXException e) {
+            // unwrap errors raised by the handler so callers see the original
+            if (e.getException() != null)
+                throw e.getException();
+            throw e;
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * SAX handler for a worksheet part; builds an array of cell
+     * values for each row element and hands it to a RowHandler
+     */
+    private class SheetHandler extends DefaultHandler {
+        private RowHandler handler;
+        private StringPool pool;
+        private int rowCount;
+        private String[] cells = new String[64];
+        private int len;
+        private int rowNum;
+        private int col;
+        private String type;
+        private int style;
+        private boolean hasFormula;
+        private StringBuilder value = new StringBuilder();
+        private StringBuilder formula = new StringBuilder();
+        private StringBuilder text; // buffer for the element being read, if any
+
+        SheetHandler(RowHandler handler, StringPool pool) {
+            this.handler = handler;
+            this.pool = pool;
+        }
+
+        public void startElement(String uri, String localName, String qName,
+                                 Attributes attrs) throws SAXException {
+            switch(localName) {
+            case "row":
+                String r = attrs.getValue("r");
+                rowNum = (r == null) ? rowNum + 1 : Integer.parseInt(r);
+                Arrays.fill(cells, 0, len, null);
+                len = 0;
+                col = -1;
+                break;
+            case "c":
+                String ref = attrs.getValue("r");
+                col = (ref == null) ? col + 1 : columnIndex(ref);
+                type = attrs.getValue("t");
+                String s = attrs.getValue("s");
+                style = (s == null) ? -1 : Integer.parseInt(s);
+                hasFormula = false;
+                value.setLength(0);
+                formula.setLength(0);
+                break;
+            case "v":
+            case "t": // inline string, possibly in several rich-text runs
+                text = value;
+                break;
+            case "f":
+                hasFormula = true;
+                text = formula;
+                break;
+            }
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            if (text != null)
+                text.append(ch, start, length);
+        }
+
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch(localName) {
+            case "v":
+            case "t":
+            case "f":
+                text = null;
+                break;
+            case "c":
+                setCell(col, cellValue());
+                break;
+            case "row":
+                if (len == 0) // no cells; POI's getLastCellNum() would be -1
+                    break;
+                if (Thread.currentThread().isInterrupted()) // e.g. a batch timeout
+                    throw new SAXException(new InterruptedException(file + ": interrupted"));
+                String[] fields = new String[len];
+                for (int i=0; i<len; i++) // XXX: don't want nulls
+                    fields[i] = (cells[i] == null) ? "" : cells[i];
+                rowCount++;
+                try {
+                    handler.handleRow(fields, rowNum);
+                } catch (Exception e) {
+                    throw new SAXException(e);
+                }
+                break;
+            }
+        }
+
+        private void setCell(int idx, String v) {
+            if (idx >= cells.length)
+                cells = Arrays.copyOf(cells, Math.max(idx + 1, cells.length * 2));
+            cells[idx] = v;
+            if (idx >= len)
+                len = idx + 1;
+        }
+
+        /**
+         * Convert the current cell to a string, matching AvailSS.addSheetHelper()
+         * @return the cell's value, shared with equal values if possible
+         */
+        private String cellValue() {
+            if (hasFormula) // the usermodel reports the formula itself
+                return pool.intern(formula.toString());
+            String v = value.toString();
+            if (type == null || type.equals("n")) {
+                if (v.equals("")) // Blank
+                    return "";
+                double d = Double.parseDouble(v);
+                if (d < 0.5) { // XXX hack: assume TotalRunTime
+                    v = formatRunTime(d);
+                } else if (isDateFormatted(d)) {
+                    v = new SimpleDateFormat("dd-MMM-yyyy").format(DateUtil.getJavaDate(d));
+                } else {
+                    v = Double.toString(d);
+                }
+                return pool.intern(v);
+            }
+            switch(type) {
+            case "s": // String (shared); pooled by index, so it's only trimmed once
+                int idx = Integer.parseInt(v);
+                String s = pool.lookupShared(idx);
+                return (s != null) ? s : pool.storeShared(idx, strings.getEntryAt(idx).trim());
+            case "inlineStr":
+                return pool.intern(v.trim());
+            case "b":
+                return v.equals("1") ? "TRUE" : "FALSE";
+            default: // errors and anything else
+                return pool.intern(v);
+            }
+        }
+
+        private boolean isDateFormatted(double d) {
+            return style >= 0 && style < dateStyles.length && dateStyles[style]
+                && DateUtil.isValidExcelDate(d);
+        }
+    } /* SheetHandler */
+
+    /**
+     * Format a time of day, such as a TotalRunTime cell, as hh:mm:ss
+     * @param d an Excel date/time value
+     * @return the time part of d
+     */
+    static String formatRunTime(double d) {
+        Calendar c = DateUtil.getJavaCalendar(d);
+        return String.format("%02d:%02d:%02d", c.get(Calendar.HOUR_OF_DAY),
+                             c.get(Calendar.MINUTE), c.get(Calendar.SECOND));
+    }
+
+    /**
+     * Convert the column part of a cell reference (e.g. "AB12") to a zero-based index
+     * @param ref an A1-style cell reference
+     * @return the column index
+     */
+    static int columnIndex(String ref) {
+        int idx = 0;
+        for (int i=0; i<ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z')
+                break;
+            idx = idx * 26 + (c - 'A' + 1);
+        }
+        return idx - 1;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.util.*;
+
+/**
+ * A bounded pool used while loading a sheet so that repeated cell
+ * values (Territory, WorkType, EntryType etc.) share a single String
+ * instance.  Values are pooled until the pool is full; after that new
+ * values are passed through unchanged.  A pool is used by one thread
+ * for one load and then discarded.
+ */
+final class StringPool {
+    static final int DEFAULT_SIZE = 65536;
+
+    private final int maxSize;
+    private HashMap<String, String> pool;
+    private String[] shared; // by shared-strings table index
+    private long lookups, hits;
+
+    /**
+     * Create a pool
+     * @param maxSize the maximum number of distinct values held; if zero
+     *        or less, nothing is pooled (but lookups are still counted)
+     */
+    StringPool(int maxSize) {
+        this.maxSize = maxSize;
+        pool = new HashMap<String, String>();
+        shared = new String[0];
+    }
+
+    /**
+     * Get the pooled instance of a value
+     * @param s the value; empty strings are not counted
+     * @return an equal string, shared with earlier calls if possible
+     */
+    String intern(String s) {
+        if (s.length() == 0)
+            return ""; // not counted
+        lookups++;
+        return pooled(s);
+    }
+
+    /**
+     * Get the pooled value of a shared string, if it has been seen before
+     * @param index the shared-strings table index
+     * @return the value previously stored for index, or null
+     */
+    String lookupShared(int index) {
+        if (index < shared.length && shared[index] != null) {
+            lookups++;
+            hits++;
+            return shared[index];
+        }
+        return null;
+    }
+
+    /**
+     * Pool a shared string that lookupShared() did not find
+     * @param index the shared-strings table index
+     * @param s the (trimmed) value of the string
+     * @return an equal string, shared with earlier calls if possible
+     */
+    String storeShared(int index, String s) {
+        lookups++;
+        s = pooled(s);
+        if (index < maxSize) {
+            if (index >= shared.length)
+                shared = Arrays.copyOf(shared, Math.min(maxSize, Math.max(index + 1, shared.length * 2)));
+            shared[index] = s;
+        }
+        return s;
+    }
+
+    private String pooled(String s) {
+        String p = pool.get(s);
+        if (p != null) {
+            hits++;
+            return p;
+        }
+        if (pool.size() < maxSize)
+            pool.put(s, s);
+        return s;
+    }
+
+    /**
+     * @return the number of values passed through the pool
+     */
+    long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * @return the number of values that were replaced by an existing instance
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of distinct values held
+     */
+    int size() {
+        return pool.size();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015 MovieLabs
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Author: Paul Jensen <pgj@movielabs.com>
+ */
+
+
+package com.movielabs.availslib;
+import java.util.*;
+
+/**
+ * The result of validating a sheet without converting it to XML: the
+ * number of avails checked, and every problem found, in row order
+ */
+public class ValidationReport extends DiagnosticsCollector {
+    private String sheetName;
+    private int rowCount;
+
+    /**
+     * Create an empty report
+     * @param sheetName the name of the sheet being validated
+     */
+    public ValidationReport(String sheetName) {
+        this.sheetName = sheetName;
+    }
+
+    /**
+     * Create an empty report that keeps a limited number of problems
+     * @param sheetName the name of the sheet being validated
+     * @param maxErrors the number of problems to keep; the rest are only counted
+     */
+    public ValidationReport(String sheetName, int maxErrors) {
+        super(maxErrors);
+        this.sheetName = sheetName;
+    }
+
+    void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public String getSheetName() {
+        return sheetName;
+    }
+
+    /**
+     * @return the number of avails that were checked
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return true iff no problems were found
+     */
+    public boolean isValid() {
+        return getTotal() == 0;
+    }
+
+    /**
+     * Get the problems found
+     * @return a list of problems, in row order
+     */
+    public List<Diagnostic> getErrors() {
+        return getDiagnostics();
+    }
+}